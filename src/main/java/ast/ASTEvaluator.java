@@ -0,0 +1,426 @@
+package ast;
+
+import ast.enums.SortOrder;
+import ast.nodes.*;
+import model.Table;
+import model.Vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Visitor that interprets an AST directly over in-memory {@link Table}s instead of
+ * translating it to SQL and sending it to the database.
+ *
+ * <p>Query nodes evaluate to a {@link Table}, expression nodes evaluate to the value of the
+ * expression for the row in the context, and filter nodes evaluate to a {@link Boolean}
+ * following SQL three-valued logic ({@code null} stands for UNKNOWN).
+ *
+ * <p>Error handling follows the same convention as {@link ASTTranslator}:
+ * <ul>
+ *     <li>{@link UnsupportedOperationException} means the evaluator cannot decide the node
+ *     locally (unsupported node type, or collation-dependent text ordering). Callers should
+ *     fall back to the database.</li>
+ *     <li>Any other {@link RuntimeException} means the database would reject the query too
+ *     (unknown table, incomparable types, mismatched vector dimensions, ...).</li>
+ * </ul>
+ */
+public class ASTEvaluator implements Visitor<Object, ASTEvaluator.RowContext> {
+
+    /**
+     * The row currently being evaluated, together with the column layout of its table.
+     * Expression and filter nodes read column values from it.
+     */
+    public static final class RowContext {
+        private final Map<String, Integer> columnIndex;
+        private final List<Object> values;
+
+        private RowContext(Map<String, Integer> columnIndex, List<Object> values) {
+            this.columnIndex = columnIndex;
+            this.values = values;
+        }
+
+        private Object get(String columnName) {
+            Integer index = columnIndex.get(columnName);
+            if (index == null) {
+                throw new IllegalArgumentException("Column does not exist: " + columnName);
+            }
+            return values.get(index);
+        }
+    }
+
+    /**
+     * Map key comparing vectors by identity; {@link Vector#equals} compares every component.
+     */
+    private record IdentityKey(Vector vector) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).vector == vector;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(vector);
+        }
+    }
+
+    private final Map<String, Table> tables;
+    // The components of each vector seen, since Vector.getData() copies them on every call. Only vectors of
+    // the input tables and of constants are evaluated, so this holds one copy of each at most.
+    private final Map<IdentityKey, float[]> vectorData = new ConcurrentHashMap<>();
+
+    /**
+     * @param inputTables The tables that {@link TableNode}s may refer to, looked up by name.
+     */
+    public ASTEvaluator(List<Table> inputTables) {
+        this.tables = new HashMap<>();
+        for (Table table : inputTables) {
+            this.tables.put(table.getName(), table);
+        }
+    }
+
+    /**
+     * Public entry point for evaluation.
+     *
+     * @param root The root QueryNode (the complete query AST).
+     * @return The result of the query as a table.
+     */
+    public Table evaluate(QueryNode root) {
+        return (Table) root.accept(this, null);
+    }
+
+    /**
+     * Evaluates a filter against a single row of a table.
+     *
+     * @param filter The filter to evaluate.
+     * @param table The table the row belongs to (used for column lookups).
+     * @param row The row values.
+     * @return True only if the filter evaluates to TRUE; FALSE and UNKNOWN both return false.
+     */
+    public boolean test(FilterNode filter, Table table, List<Object> row) {
+        return Boolean.TRUE.equals(filter.accept(this, new RowContext(indexColumns(table), row)));
+    }
+
+    /**
+     * Evaluates a filter against every row of a table.
+     *
+     * @param filter The filter to evaluate.
+     * @param table The table whose rows are evaluated.
+     * @return For each row, in order, TRUE, FALSE, or null for UNKNOWN.
+     */
+    public Boolean[] evaluateFilter(FilterNode filter, Table table) {
+        Map<String, Integer> columnIndex = indexColumns(table);
+        List<List<Object>> rows = table.getRows();
+        Boolean[] results = new Boolean[rows.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = (Boolean) filter.accept(this, new RowContext(columnIndex, rows.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates an expression against every row of a table.
+     *
+     * @param expression The expression to evaluate, e.g. a sort key.
+     * @param table The table whose rows are evaluated.
+     * @return For each row, in order, the value of the expression, or null for NULL.
+     */
+    public Object[] evaluateExpression(ExpressionNode expression, Table table) {
+        Map<String, Integer> columnIndex = indexColumns(table);
+        List<List<Object>> rows = table.getRows();
+        Object[] results = new Object[rows.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = expression.accept(this, new RowContext(columnIndex, rows.get(i)));
+        }
+        return results;
+    }
+
+    // --- Query Nodes ---
+
+    @Override
+    public Object visit(TableNode node, RowContext context) {
+        Table table = tables.get(node.getTableName());
+        if (table == null) {
+            throw new IllegalArgumentException("Table does not exist: " + node.getTableName());
+        }
+        return table;
+    }
+
+    @Override
+    public Object visit(SelectNode node, RowContext context) {
+        Table source = (Table) node.getSource().accept(this, null);
+        Map<String, Integer> columnIndex = indexColumns(source);
+        List<List<Object>> rows = new ArrayList<>();
+        for (List<Object> row : source.getRows()) {
+            if (Boolean.TRUE.equals(node.getFilter().accept(this, new RowContext(columnIndex, row)))) {
+                rows.add(row);
+            }
+        }
+        return new Table(source.getName(), source.getColumns(), rows);
+    }
+
+    @Override
+    public Object visit(OrderByNode node, RowContext context) {
+        Table source = (Table) node.getSource().accept(this, null);
+        Map<String, Integer> columnIndex = indexColumns(source);
+        List<List<Object>> sourceRows = source.getRows();
+
+        // The sort key is computed once per row; rows are sorted by their position in sourceRows.
+        List<Object> keys = new ArrayList<>(sourceRows.size());
+        List<Integer> order = new ArrayList<>(sourceRows.size());
+        for (int i = 0; i < sourceRows.size(); i++) {
+            keys.add(node.getSortExpression().accept(this, new RowContext(columnIndex, sourceRows.get(i))));
+            order.add(i);
+        }
+
+        // PostgreSQL sorts NULLs as if they were larger than any other value:
+        // last for ASC, first for DESC. List.sort is stable, like a sequential scan followed by a sort.
+        Comparator<Integer> comparator = Comparator.comparing(keys::get, Comparator.nullsLast(this::compareForOrdering));
+        if (node.getSortOrder() == SortOrder.DESC) {
+            comparator = comparator.reversed();
+        }
+        order.sort(comparator);
+        List<List<Object>> rows = new ArrayList<>(sourceRows.size());
+        for (int i : order) {
+            rows.add(sourceRows.get(i));
+        }
+        return new Table(source.getName(), source.getColumns(), rows);
+    }
+
+    @Override
+    public Object visit(LimitNode node, RowContext context) {
+        Table source = (Table) node.getSource().accept(this, null);
+        List<List<Object>> rows = source.getRows();
+        return new Table(source.getName(), source.getColumns(), rows.subList(0, Math.min(node.getValue(), rows.size())));
+    }
+
+    @Override
+    public Object visit(ProjectionNode node, RowContext context) {
+        Table source = (Table) node.getSource().accept(this, null);
+        Map<String, Integer> columnIndex = indexColumns(source);
+
+        List<Table.Column> columns = new ArrayList<>();
+        for (AliasedExpression aliasedExpr : node.getSelectList()) {
+            columns.add(new Table.Column(outputName(aliasedExpr), outputType(aliasedExpr.expression(), source)));
+        }
+
+        List<List<Object>> rows = new ArrayList<>();
+        for (List<Object> row : source.getRows()) {
+            RowContext rowContext = new RowContext(columnIndex, row);
+            List<Object> projected = new ArrayList<>(columns.size());
+            for (AliasedExpression aliasedExpr : node.getSelectList()) {
+                projected.add(aliasedExpr.expression().accept(this, rowContext));
+            }
+            rows.add(projected);
+        }
+        return new Table("result_table", columns, rows);
+    }
+
+    // --- Expression Nodes ---
+
+    @Override
+    public Object visit(ColumnReferenceNode node, RowContext context) {
+        return context.get(node.getColumnName());
+    }
+
+    @Override
+    public Object visit(ConstantValueNode node, RowContext context) {
+        return node.getValue();
+    }
+
+    @Override
+    public Object visit(NullValueNode node, RowContext context) {
+        return null;
+    }
+
+    @Override
+    public Object visit(DistanceExpressionNode node, RowContext context) {
+        Object left = node.getLeft().accept(this, context);
+        Object right = node.getRight().accept(this, context);
+        if (left == null || right == null) {
+            return null;
+        }
+        if (!(left instanceof Vector) || !(right instanceof Vector)) {
+            throw new IllegalArgumentException("Operator " + node.getOperator() + " requires vector operands.");
+        }
+        return DistanceKernels.distance(node.getOperator(), data((Vector) left), data((Vector) right));
+    }
+
+    // --- Filter Nodes ---
+
+    @Override
+    public Object visit(PredicateNode node, RowContext context) {
+        Object left = node.getLeft().accept(this, context);
+        Object right = node.getRight().accept(this, context);
+        if (left == null || right == null) {
+            return null;
+        }
+        switch (node.getOperator()) {
+            case EQ:
+                return compareForEquality(left, right) == 0;
+            case NEQ:
+                return compareForEquality(left, right) != 0;
+            case GT:
+                return compareForOrdering(left, right) > 0;
+            case LT:
+                return compareForOrdering(left, right) < 0;
+            case GTE:
+                return compareForOrdering(left, right) >= 0;
+            case LTE:
+                return compareForOrdering(left, right) <= 0;
+            default:
+                throw new UnsupportedOperationException("ASTEvaluator does not support operator " + node.getOperator());
+        }
+    }
+
+    @Override
+    public Object visit(IsNullPredicateNode node, RowContext context) {
+        Object value = node.getExpression().accept(this, context);
+        return node.isNull() == (value == null);
+    }
+
+    @Override
+    public Object visit(AndFilterNode node, RowContext context) {
+        Boolean left = (Boolean) node.getLeft().accept(this, context);
+        Boolean right = (Boolean) node.getRight().accept(this, context);
+        if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right)) return false;
+        if (left == null || right == null) return null;
+        return true;
+    }
+
+    @Override
+    public Object visit(OrFilterNode node, RowContext context) {
+        Boolean left = (Boolean) node.getLeft().accept(this, context);
+        Boolean right = (Boolean) node.getRight().accept(this, context);
+        if (Boolean.TRUE.equals(left) || Boolean.TRUE.equals(right)) return true;
+        if (left == null || right == null) return null;
+        return false;
+    }
+
+    @Override
+    public Object visit(NotFilterNode node, RowContext context) {
+        Boolean child = (Boolean) node.getChild().accept(this, context);
+        return child == null ? null : !child;
+    }
+
+    private Object unsupported(ASTNode node) {
+        throw new UnsupportedOperationException("ASTEvaluator does not yet support visiting " + node.getClass().getSimpleName());
+    }
+
+    @Override public Object visit(AggregateExpressionNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(BinaryOpExpressionNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(CastExpressionNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(SortExpression node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(JoinNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(UnionNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(RenameNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(AggregationNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(WithNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(FunctionCallNode node, RowContext c) { return unsupported(node); }
+    @Override public Object visit(ScalarSubqueryNode node, RowContext c) { return unsupported(node); }
+
+    // --- Helpers ---
+
+    private Map<String, Integer> indexColumns(Table table) {
+        Map<String, Integer> columnIndex = new HashMap<>();
+        List<Table.Column> columns = table.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.put(columns.get(i).getName(), i);
+        }
+        return columnIndex;
+    }
+
+    private String outputName(AliasedExpression aliasedExpr) {
+        if (aliasedExpr.hasAlias()) {
+            return aliasedExpr.alias();
+        }
+        if (aliasedExpr.expression() instanceof ColumnReferenceNode) {
+            return ((ColumnReferenceNode) aliasedExpr.expression()).getColumnName();
+        }
+        // PostgreSQL's name for an unaliased computed column.
+        return "?column?";
+    }
+
+    private String outputType(ExpressionNode expression, Table source) {
+        if (expression instanceof ColumnReferenceNode) {
+            String columnName = ((ColumnReferenceNode) expression).getColumnName();
+            return source.getColumn(columnName).map(Table.Column::getType).orElse("unknown");
+        }
+        if (expression instanceof DistanceExpressionNode) {
+            return "double";
+        }
+        if (expression instanceof ConstantValueNode) {
+            Object value = ((ConstantValueNode) expression).getValue();
+            if (value instanceof Vector) return "vector";
+            if (value instanceof String) return "text";
+            if (value instanceof Boolean) return "boolean";
+            if (value instanceof Number) return isFloatingPoint((Number) value) ? "double" : "long";
+        }
+        return "unknown";
+    }
+
+    /**
+     * Equality is collation-independent for the deterministic collations PostgreSQL uses by default,
+     * so text values can be compared exactly.
+     */
+    private int compareForEquality(Object left, Object right) {
+        if (left instanceof String && right instanceof String) {
+            return left.equals(right) ? 0 : 1;
+        }
+        return compareForOrdering(left, right);
+    }
+
+    /**
+     * Orders two non-null values the way PostgreSQL would, or throws if they are not comparable.
+     */
+    private int compareForOrdering(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            Number l = (Number) left;
+            Number r = (Number) right;
+            if (isFloatingPoint(l) || isFloatingPoint(r)) {
+                return Double.compare(l.doubleValue(), r.doubleValue());
+            }
+            return Long.compare(l.longValue(), r.longValue());
+        }
+        if (left instanceof Vector && right instanceof Vector) {
+            return compareVectors((Vector) left, (Vector) right);
+        }
+        if (left instanceof Boolean && right instanceof Boolean) {
+            return Boolean.compare((Boolean) left, (Boolean) right);
+        }
+        if (left instanceof String && right instanceof String) {
+            // The database orders text by its collation, which String.compareTo does not reproduce.
+            throw new UnsupportedOperationException("ASTEvaluator does not order text values; defer to the database.");
+        }
+        throw new IllegalArgumentException("Cannot compare " + left.getClass().getSimpleName()
+                + " with " + right.getClass().getSimpleName());
+    }
+
+    /**
+     * Mirrors pgvector's vector_cmp: element-wise first, then the shorter vector sorts first.
+     */
+    private int compareVectors(Vector left, Vector right) {
+        float[] a = data(left);
+        float[] b = data(right);
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] < b[i]) return -1;
+            if (a[i] > b[i]) return 1;
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * @return The components of the vector, copied once per vector rather than once per use. Not to be modified.
+     */
+    private float[] data(Vector vector) {
+        return vectorData.computeIfAbsent(new IdentityKey(vector), key -> key.vector().getData());
+    }
+
+    private static boolean isFloatingPoint(Number n) {
+        return n instanceof Double || n instanceof Float || n instanceof java.math.BigDecimal;
+    }
+}
@@ -96,8 +96,8 @@ public class ASTPrinter implements Visitor<String, Integer> {
     public String visit(OrderByNode node, Integer level) {
         StringBuilder sb = new StringBuilder();
         sb.append(indent(level)).append("OrderByNode\n");
-        sb.append(indent(level + 1)).append("Sort Column:\n");
-        sb.append(node.getSortColumn().accept(this, level + 2));
+        sb.append(indent(level + 1)).append("Sort Expression:\n");
+        sb.append(node.getSortExpression().accept(this, level + 2));
         sb.append(indent(level + 1)).append("Sort Order: ").append(node.getSortOrder()).append("\n");
         sb.append(indent(level + 1)).append("Source:\n");
         sb.append(node.getSource().accept(this, level + 2));
@@ -2,7 +2,11 @@ package ast;
 
 import ast.enums.*;
 import ast.nodes.*;
+import model.ParameterizedQuery;
 import model.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -11,6 +15,17 @@ import java.util.stream.Collectors;
  */
 public class ASTTranslator implements Visitor<String, Void> {
 
+    // Collects bind values when translating to parameterized SQL; null when constants are inlined.
+    private final List<Object> parameters;
+
+    public ASTTranslator() {
+        this(null);
+    }
+
+    private ASTTranslator(List<Object> parameters) {
+        this.parameters = parameters;
+    }
+
     /**
      * Public entry point for translation.
      * This method starts the visitor traversal from the root node.
@@ -24,6 +39,21 @@ public class ASTTranslator implements Visitor<String, Void> {
         return root.accept(this, null);
     }
 
+    /**
+     * Translates a query into a SQL template in which every constant and LIMIT value is a
+     * {@code ?} placeholder. Candidates that only differ in their constants therefore share
+     * the same SQL text, and the database can reuse one prepared statement for all of them.
+     *
+     * @param root The root QueryNode (the complete query AST).
+     * @return The SQL template and the values to bind, in placeholder order.
+     */
+    public ParameterizedQuery translateParameterized(QueryNode root) {
+        // A fresh collector per call keeps this translator stateless and thread-safe.
+        ASTTranslator collector = new ASTTranslator(new ArrayList<>());
+        String sql = root.accept(collector, null);
+        return new ParameterizedQuery(sql, collector.parameters);
+    }
+
     @Override
     public String visit(ProjectionNode node, Void context) {
         // This is the top-level query constructor.
@@ -42,6 +72,10 @@ public class ASTTranslator implements Visitor<String, Void> {
     @Override
     public String visit(LimitNode node, Void context) {
         String sourceSql = node.getSource().accept(this, null);
+        if (parameters != null) {
+            parameters.add((long) node.getValue());
+            return sourceSql + " LIMIT ?";
+        }
         return sourceSql + " LIMIT " + node.getValue();
     }
 
@@ -57,8 +91,9 @@ public class ASTTranslator implements Visitor<String, Void> {
     public String visit(OrderByNode node, Void context) {
         // An OrderByNode appends "ORDER BY ..." to its source's SQL.
         String sourceSql = node.getSource().accept(this, null);
-        ColumnReferenceNode sortColumn = node.getSortColumn();
-        return sourceSql + " ORDER BY " + sortColumn.getColumnName() + " " + node.getSortOrder().toString();
+        // Translated after the source, so its bind values follow those of the WHERE clause.
+        String sortSql = node.getSortExpression().accept(this, null);
+        return sourceSql + " ORDER BY " + sortSql + " " + node.getSortOrder().toString();
     }
 
     @Override
@@ -91,6 +126,10 @@ public class ASTTranslator implements Visitor<String, Void> {
     public String visit(ConstantValueNode node, Void context) {
         Object value = node.getValue();
         if (value == null) return "NULL";
+        if (parameters != null) {
+            parameters.add(value);
+            return "?";
+        }
         if (value instanceof String) {
             return "'" + value.toString().replace("'", "''") + "'";
         }
@@ -167,7 +206,12 @@ public class ASTTranslator implements Visitor<String, Void> {
 
     @Override public String visit(AndFilterNode node, Void c) { return "(" + node.getLeft().accept(this, c) + " AND " + node.getRight().accept(this, c) + ")"; }
 
-    @Override public String visit(PredicateNode node, Void c) { return unsupported(node); }
+    @Override
+    public String visit(PredicateNode node, Void context) {
+        String left = node.getLeft().accept(this, null);
+        String right = node.getRight().accept(this, null);
+        return left + " " + node.getOperator().toString() + " " + right;
+    }
 
     @Override
     public String visit(IsNullPredicateNode node, Void context) {
@@ -0,0 +1,55 @@
+package ast;
+
+/**
+ * The float loops behind the pgvector distances, over two arrays of the same length.
+ * Sums are accumulated in float, as pgvector does.
+ *
+ * <p>Every kernel computes each term (a product, or a difference and its square) the same way, but may add
+ * the terms in a different order, so sums can differ in the last bits; see {@link #reorderingTolerance}.
+ *
+ * @see DistanceKernels
+ */
+interface DistanceKernel {
+
+    /**
+     * @return The sum of squared differences; its square root is the L2 distance.
+     */
+    float squaredL2(float[] a, float[] b);
+
+    /**
+     * @return The sum of products; its negation is the negative inner product.
+     */
+    float innerProduct(float[] a, float[] b);
+
+    /**
+     * @return The sum of absolute differences, the L1 distance.
+     */
+    float l1(float[] a, float[] b);
+
+    /**
+     * @return The cosine distance, or NaN if either vector is zero.
+     */
+    double cosineDistance(float[] a, float[] b);
+
+    /**
+     * Bounds the difference between two float sums of the same {@code terms} terms added in different orders,
+     * e.g. by two kernels, or by a kernel and pgvector, whose C compiler may reorder its loops too.
+     * Any order of addition is within {@code gamma(terms - 1) * absoluteSum} of the exact sum, where
+     * {@code gamma(k) = k u / (1 - k u)} and {@code u = 2^-24}; two sums are within twice that of each other.
+     * Callers comparing sums from different kernels must allow this much.
+     * @param absoluteSum The sum of the absolute values of the terms; for squared L2 and L1, the sum itself.
+     */
+    static double reorderingTolerance(int terms, double absoluteSum) {
+        double ku = Math.max(0, terms - 1) * 0x1p-24;
+        return 2 * ku / (1 - ku) * absoluteSum;
+    }
+
+    /**
+     * Completes the cosine distance from its three sums, as pgvector's cosine_distance does.
+     */
+    static double cosineDistance(float dot, float normA, float normB) {
+        double similarity = (double) dot / Math.sqrt((double) normA * (double) normB);
+        if (Double.isNaN(similarity)) return Double.NaN;
+        return 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+    }
+}
@@ -0,0 +1,58 @@
+package ast;
+
+import ast.enums.DistanceOperator;
+
+/**
+ * Computes pgvector distances in-process, with SIMD loops where available.
+ *
+ * <p>The SIMD kernel needs the incubating Vector API, which the JVM only provides when started with
+ * {@code --add-modules jdk.incubator.vector}. Without it, or on hardware with fewer than four float
+ * lanes, where the Vector API is slower than plain loops, the scalar kernel is used.
+ */
+final class DistanceKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final int MIN_LANES = 4;
+
+    private static final DistanceKernel KERNEL = select();
+
+    private DistanceKernels() {}
+
+    private static DistanceKernel select() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                if (SimdDistanceKernel.laneCount() >= MIN_LANES) {
+                    return new SimdDistanceKernel();
+                }
+            } catch (LinkageError e) {
+                // The module is present but cannot be used; fall back to plain loops.
+            }
+        }
+        return new ScalarDistanceKernel();
+    }
+
+    /**
+     * Computes a pgvector distance between the components of two vectors. Accumulation is done in float,
+     * as pgvector does, so results agree with the database in the common case.
+     * The arrays are only read; callers pass them without copying.
+     */
+    static double distance(DistanceOperator operator, float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Different vector dimensions " + a.length + " and " + b.length);
+        }
+        switch (operator) {
+            case L2_DISTANCE:
+                return Math.sqrt(KERNEL.squaredL2(a, b));
+            case NEGATIVE_INNER_PRODUCT:
+                return (double) -KERNEL.innerProduct(a, b);
+            case COSINE_DISTANCE:
+                return KERNEL.cosineDistance(a, b);
+            case L1_DISTANCE:
+                return KERNEL.l1(a, b);
+            default:
+                // Hamming and Jaccard are only defined for bit vectors, so the database rejects them on vectors.
+                throw new IllegalArgumentException("Operator " + operator + " does not exist for vector operands.");
+        }
+    }
+}
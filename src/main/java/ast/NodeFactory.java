@@ -0,0 +1,76 @@
+package ast;
+
+import ast.enums.DistanceOperator;
+import ast.enums.PredicateOperator;
+import ast.enums.SortOrder;
+import ast.nodes.ColumnReferenceNode;
+import ast.nodes.ConstantValueNode;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.SelectNode;
+import ast.nodes.TableNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates hash-consed AST nodes: structurally equal nodes built through the same factory are the
+ * same instance. Since children are interned before their parents, interning a node only compares
+ * its own fields, and two interned nodes can be compared with {@code ==}.
+ *
+ * <p>Nodes are immutable and compute their hash code once, in the constructor, so interning a deep
+ * tree does not rehash its children.
+ *
+ * <p>Every interned node stays reachable for the lifetime of the factory, so only nodes that are
+ * kept anyway should be interned. The enumerator's node arena interns leaves only, and never
+ * candidates that observational equivalence may still discard. Not thread-safe.
+ */
+public class NodeFactory {
+
+    private final Map<ASTNode, ASTNode> interned = new HashMap<>();
+
+    /**
+     * @return The canonical instance structurally equal to {@code node}; {@code node} itself if it is the first.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ASTNode> T intern(T node) {
+        ASTNode existing = interned.putIfAbsent(node, node);
+        return existing == null ? node : (T) existing;
+    }
+
+    /**
+     * @return The number of distinct nodes interned so far.
+     */
+    public int size() {
+        return interned.size();
+    }
+
+    public TableNode table(String tableName) {
+        return intern(new TableNode(tableName));
+    }
+
+    public ColumnReferenceNode column(String columnName) {
+        return intern(new ColumnReferenceNode(columnName));
+    }
+
+    public ConstantValueNode constant(Object value) {
+        return intern(new ConstantValueNode(value));
+    }
+
+    public DistanceExpressionNode distance(ExpressionNode left, DistanceOperator operator, ExpressionNode right) {
+        return intern(new DistanceExpressionNode(left, operator, right));
+    }
+
+    public PredicateNode predicate(ExpressionNode left, PredicateOperator operator, ExpressionNode right) {
+        return intern(new PredicateNode(left, operator, right));
+    }
+
+    public SelectNode select(OrderableQuery source, FilterNode filter) {
+        return intern(new SelectNode(source, filter));
+    }
+
+    public OrderByNode orderBy(OrderableQuery source, ExpressionNode sortExpression, SortOrder sortOrder) {
+        return intern(new OrderByNode(source, sortExpression, sortOrder));
+    }
+}
@@ -0,0 +1,48 @@
+package ast;
+
+/**
+ * Distance loops that add the terms one by one, in element order.
+ */
+final class ScalarDistanceKernel implements DistanceKernel {
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        float sum = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            float diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public float innerProduct(float[] a, float[] b) {
+        float dot = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    @Override
+    public float l1(float[] a, float[] b) {
+        float sum = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosineDistance(float[] a, float[] b) {
+        float dot = 0.0f;
+        float normA = 0.0f;
+        float normB = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return DistanceKernel.cosineDistance(dot, normA, normB);
+    }
+}
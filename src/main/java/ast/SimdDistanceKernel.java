@@ -0,0 +1,106 @@
+package ast;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Distance loops on the Java Vector API (incubating in JDK 21, module {@code jdk.incubator.vector}).
+ *
+ * <p>Each lane accumulates every {@code SPECIES.length()}-th term, and the lanes are then added in lane
+ * order, followed by the terms past the last full vector. Like pgvector, which is built with
+ * {@code -fassociative-math} so the C compiler may vectorize its loops the same way, the result can differ
+ * from an element-by-element sum in the last bits, within {@link DistanceKernel#reorderingTolerance}. The lanes
+ * of one step cannot be added in element order without giving up the speed-up, so the order is not made to
+ * match. Multiplications and additions are kept separate rather than fused, so each term is rounded as in the
+ * scalar loops. For a given species, results are deterministic.
+ */
+final class SimdDistanceKernel implements DistanceKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * @return The number of floats processed per step on this machine.
+     */
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i));
+            sum = sum.add(diff.mul(diff));
+        }
+        float result = sumLanes(sum);
+        for (; i < a.length; i++) {
+            float diff = a[i] - b[i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    @Override
+    public float innerProduct(float[] a, float[] b) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            dot = dot.add(FloatVector.fromArray(SPECIES, a, i).mul(FloatVector.fromArray(SPECIES, b, i)));
+        }
+        float result = sumLanes(dot);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float l1(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            sum = sum.add(FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i)).abs());
+        }
+        float result = sumLanes(sum);
+        for (; i < a.length; i++) {
+            result += Math.abs(a[i] - b[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public double cosineDistance(float[] a, float[] b) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dot = dot.add(va.mul(vb));
+            normA = normA.add(va.mul(va));
+            normB = normB.add(vb.mul(vb));
+        }
+        float dotSum = sumLanes(dot);
+        float normASum = sumLanes(normA);
+        float normBSum = sumLanes(normB);
+        for (; i < a.length; i++) {
+            dotSum += a[i] * b[i];
+            normASum += a[i] * a[i];
+            normBSum += b[i] * b[i];
+        }
+        return DistanceKernel.cosineDistance(dotSum, normASum, normBSum);
+    }
+
+    /**
+     * Adds the lanes in order. {@code reduceLanes(ADD)} does not fix the order for floats.
+     */
+    private static float sumLanes(FloatVector vector) {
+        float sum = 0.0f;
+        for (float lane : vector.toArray()) {
+            sum += lane;
+        }
+        return sum;
+    }
+}
@@ -9,6 +9,7 @@ public class AndFilterNode implements FilterNode {
 
     private final FilterNode left;
     private final FilterNode right;
+    private final int hash;
 
     /**
      * Constructs a new AndFilterNode.
@@ -19,6 +20,7 @@ public class AndFilterNode implements FilterNode {
     public AndFilterNode(FilterNode left, FilterNode right) {
         this.left = Objects.requireNonNull(left, "Left child of AND node cannot be null.");
         this.right = Objects.requireNonNull(right, "Right child of AND node cannot be null.");
+        this.hash = Objects.hash(left, right);
     }
 
     /**
@@ -53,6 +55,19 @@ public class AndFilterNode implements FilterNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AndFilterNode other = (AndFilterNode) o;
+        return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "(left) AND (right)".
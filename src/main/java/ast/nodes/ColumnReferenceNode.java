@@ -8,6 +8,7 @@ import java.util.Objects;
 public class ColumnReferenceNode implements ExpressionNode {
 
     private final String columnName;
+    private final int hash;
 
     /**
      * Constructs a new ColumnRefNode.
@@ -16,6 +17,7 @@ public class ColumnReferenceNode implements ExpressionNode {
      */
     public ColumnReferenceNode(String columnName) {
         this.columnName = Objects.requireNonNull(columnName, "Column name cannot be null.");
+        this.hash = Objects.hash(columnName);
     }
 
     /**
@@ -42,6 +44,19 @@ public class ColumnReferenceNode implements ExpressionNode {
         return columnName;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ColumnReferenceNode other = (ColumnReferenceNode) o;
+        return hash == other.hash && columnName.equals(other.columnName);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "Column(columnName)".
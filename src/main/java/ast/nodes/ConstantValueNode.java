@@ -8,6 +8,7 @@ import java.util.Objects;
 public class ConstantValueNode extends ValueNode {
 
     private final Object value;
+    private final int hash;
 
     /**
      * Constructs a new ConstantValueNode.
@@ -17,6 +18,7 @@ public class ConstantValueNode extends ValueNode {
      */
     public ConstantValueNode(Object value) {
         this.value = Objects.requireNonNull(value, "Value for ConstantValueNode cannot be null. Use NullValueNode for SQL NULL.");
+        this.hash = Objects.hash(value);
     }
 
     /**
@@ -42,6 +44,19 @@ public class ConstantValueNode extends ValueNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConstantValueNode other = (ConstantValueNode) o;
+        return hash == other.hash && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "Constant(value)".
@@ -18,6 +18,7 @@ public class DistanceExpressionNode implements ExpressionNode {
     private final ExpressionNode left;
     private final DistanceOperator operator;
     private final ExpressionNode right;
+    private final int hash;
 
     /**
      * Constructs a new DistanceExprNode.
@@ -30,6 +31,7 @@ public class DistanceExpressionNode implements ExpressionNode {
         this.left = Objects.requireNonNull(left, "Left vector expression cannot be null.");
         this.operator = Objects.requireNonNull(operator, "Distance operator cannot be null.");
         this.right = Objects.requireNonNull(right, "Right vector expression cannot be null.");
+        this.hash = Objects.hash(left, operator, right);
     }
 
     /**
@@ -73,6 +75,22 @@ public class DistanceExpressionNode implements ExpressionNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DistanceExpressionNode other = (DistanceExpressionNode) o;
+        return hash == other.hash
+                && left.equals(other.left)
+                && operator == other.operator
+                && right.equals(other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      *
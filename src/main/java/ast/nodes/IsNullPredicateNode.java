@@ -16,6 +16,7 @@ public class IsNullPredicateNode implements FilterNode {
 
     private final ExpressionNode expression;
     private final boolean isNull; // true for "IS NULL", false for "IS NOT NULL"
+    private final int hash;
 
     /**
      * Constructs a new IsNullPredicateNode.
@@ -26,6 +27,7 @@ public class IsNullPredicateNode implements FilterNode {
     public IsNullPredicateNode(ExpressionNode expression, boolean isNull) {
         this.expression = Objects.requireNonNull(expression, "Expression for IS NULL check cannot be null.");
         this.isNull = isNull;
+        this.hash = Objects.hash(expression, isNull);
     }
 
     /**
@@ -58,6 +60,21 @@ public class IsNullPredicateNode implements FilterNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IsNullPredicateNode other = (IsNullPredicateNode) o;
+        return hash == other.hash
+                && expression.equals(other.expression)
+                && isNull == other.isNull;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "expr IS NULL" or "expr IS NOT NULL".
@@ -15,6 +15,7 @@ public class LimitNode implements QueryNode {
 
     private final LimitableQuery source;
     private final int value;
+    private final int hash;
 
     public LimitNode(LimitableQuery source, int value) {
         this.source = Objects.requireNonNull(source, "Source for LimitNode cannot be null.");
@@ -22,6 +23,7 @@ public class LimitNode implements QueryNode {
             throw new IllegalArgumentException("LIMIT value must be non-negative.");
         }
         this.value = value;
+        this.hash = Objects.hash(source, value);
     }
 
     public QueryNode getSource() { return source; }
@@ -32,6 +34,19 @@ public class LimitNode implements QueryNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LimitNode other = (LimitNode) o;
+        return hash == other.hash && source.equals(other.source) && value == other.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "(" + source + ") LIMIT " + value;
@@ -14,6 +14,7 @@ import java.util.Objects;
 public class NotFilterNode implements FilterNode {
 
     private final FilterNode child;
+    private final int hash;
 
     /**
      * Constructs a new NotFilterNode.
@@ -22,6 +23,7 @@ public class NotFilterNode implements FilterNode {
      */
     public NotFilterNode(FilterNode child) {
         this.child = Objects.requireNonNull(child, "Child of NOT node cannot be null.");
+        this.hash = Objects.hash(child);
     }
 
     /**
@@ -47,6 +49,19 @@ public class NotFilterNode implements FilterNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NotFilterNode other = (NotFilterNode) o;
+        return hash == other.hash && child.equals(other.child);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "NOT (child)".
@@ -15,6 +15,7 @@ public class OrFilterNode implements FilterNode {
 
     private final FilterNode left;
     private final FilterNode right;
+    private final int hash;
 
     /**
      * Constructs a new OrFilterNode.
@@ -25,6 +26,7 @@ public class OrFilterNode implements FilterNode {
     public OrFilterNode(FilterNode left, FilterNode right) {
         this.left = Objects.requireNonNull(left, "Left child of OR node cannot be null.");
         this.right = Objects.requireNonNull(right, "Right child of OR node cannot be null.");
+        this.hash = Objects.hash(left, right);
     }
 
     /**
@@ -59,6 +61,19 @@ public class OrFilterNode implements FilterNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OrFilterNode other = (OrFilterNode) o;
+        return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "(left) OR (right)".
@@ -1,5 +1,6 @@
 package ast.nodes;
 
+import ast.ExpressionNode;
 import ast.LimitableQuery;
 import ast.OrderableQuery;
 import ast.QueryNode;
@@ -11,39 +12,37 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
- * Represents a sort operation on a relation based on a single column.
+ * Represents a sort operation on a relation based on a single expression.
  *
- * This node corresponds to a simplified ORDER BY clause like "ORDER BY column_name ASC/DESC".
- * It takes an OrderableQuery as its source.
+ * This node corresponds to a simplified ORDER BY clause like "ORDER BY column_name ASC/DESC"
+ * or "ORDER BY embedding <-> '[...]' ASC". It takes an OrderableQuery as its source.
  */
 public class OrderByNode implements LimitableQuery {
 
     private final OrderableQuery source;
-    private final ColumnReferenceNode sortColumn;
+    private final ExpressionNode sortExpression;
     private final SortOrder sortOrder;
+    private final int hash;
 
     /**
      * Constructs a new OrderByNode.
      * @param source The input query that provides the data to be sorted. Must not be null.
-     * @param sortColumn The column to sort by. Must not be null.
+     * @param sortExpression The expression to sort by, e.g. a column or a distance to a query vector. Must not be null.
      * @param sortOrder The sort order (ASC or DESC). Must not be null.
      */
-
-    /**
-     * Onlu for order by column name
-     */
-    public OrderByNode(OrderableQuery source, ColumnReferenceNode sortColumn, SortOrder sortOrder) {
+    public OrderByNode(OrderableQuery source, ExpressionNode sortExpression, SortOrder sortOrder) {
         this.source = Objects.requireNonNull(source, "Source for OrderByNode cannot be null.");
-        this.sortColumn = Objects.requireNonNull(sortColumn, "Sort column for OrderByNode cannot be null.");
+        this.sortExpression = Objects.requireNonNull(sortExpression, "Sort expression for OrderByNode cannot be null.");
         this.sortOrder = Objects.requireNonNull(sortOrder, "Sort order for OrderByNode cannot be null.");
+        this.hash = Objects.hash(source, sortExpression, sortOrder);
     }
 
     public OrderableQuery getSource() {
         return source;
     }
 
-    public ColumnReferenceNode getSortColumn() {
-        return sortColumn;
+    public ExpressionNode getSortExpression() {
+        return sortExpression;
     }
 
     public SortOrder getSortOrder() {
@@ -55,8 +54,27 @@ public class OrderByNode implements LimitableQuery {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OrderByNode other = (OrderByNode) o;
+        return hash == other.hash
+                && source.equals(other.source)
+                && sortExpression.equals(other.sortExpression)
+                && sortOrder == other.sortOrder;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
-        return "(" + source + ") ORDER BY " + sortColumn.getColumnName() + " " + sortOrder;
+        String sortKey = sortExpression instanceof ColumnReferenceNode
+                ? ((ColumnReferenceNode) sortExpression).getColumnName()
+                : sortExpression.toString();
+        return "(" + source + ") ORDER BY " + sortKey + " " + sortOrder;
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ public class PredicateNode implements FilterNode {
     private final ExpressionNode left;
     private final PredicateOperator operator;
     private final ExpressionNode right;
+    private final int hash;
 
     /**
      * Constructs a new PredicateNode.
@@ -32,6 +33,7 @@ public class PredicateNode implements FilterNode {
         this.left = Objects.requireNonNull(left, "Left expression cannot be null.");
         this.operator = Objects.requireNonNull(operator, "Predicate operator cannot be null.");
         this.right = Objects.requireNonNull(right, "Right expression cannot be null.");
+        this.hash = Objects.hash(left, operator, right);
     }
 
     /**
@@ -72,6 +74,22 @@ public class PredicateNode implements FilterNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PredicateNode other = (PredicateNode) o;
+        return hash == other.hash
+                && left.equals(other.left)
+                && operator == other.operator
+                && right.equals(other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     /**
      * Provides a string representation for debugging purposes.
      * @return A string in the format "left op right".
@@ -19,6 +19,7 @@ public class ProjectionNode implements QueryNode {
 
     private final QueryNode source;
     private final List<AliasedExpression> selectList;
+    private final int hash;
 
     /**
      * Constructs a new ProjectionNode.
@@ -29,6 +30,7 @@ public class ProjectionNode implements QueryNode {
     public ProjectionNode(QueryNode source, List<AliasedExpression> selectList) {
         this.source = Objects.requireNonNull(source, "Source for ProjectionNode cannot be null.");
         this.selectList = Objects.requireNonNull(selectList, "Select list for ProjectionNode cannot be null.");
+        this.hash = Objects.hash(source, selectList);
     }
 
     public QueryNode getSource() {
@@ -47,6 +49,21 @@ public class ProjectionNode implements QueryNode {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProjectionNode other = (ProjectionNode) o;
+        return hash == other.hash
+                && source.equals(other.source)
+                && selectList.equals(other.selectList);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     // toString() is also updated for better debugging.
     @Override
     public String toString() {
@@ -14,6 +14,7 @@ public class SelectNode implements OrderableQuery, LimitableQuery {
 
     private final OrderableQuery source;
     private final FilterNode filter;
+    private final int hash;
 
     /**
      * Constructs a new SelectNode.
@@ -24,6 +25,7 @@ public class SelectNode implements OrderableQuery, LimitableQuery {
     public SelectNode(OrderableQuery source, FilterNode filter) {
         this.source = Objects.requireNonNull(source, "Source for SelectNode cannot be null.");
         this.filter = Objects.requireNonNull(filter, "Filter for SelectNode cannot be null.");
+        this.hash = Objects.hash(source, filter);
     }
 
     public QueryNode getSource() {
@@ -39,6 +41,21 @@ public class SelectNode implements OrderableQuery, LimitableQuery {
         return visitor.visit(this, context);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SelectNode other = (SelectNode) o;
+        return hash == other.hash
+                && source.equals(other.source)
+                && filter.equals(other.filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "(" + source + ") WHERE (" + filter + ")";
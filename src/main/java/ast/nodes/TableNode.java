@@ -5,12 +5,16 @@ import ast.OrderableQuery;
 import ast.QueryNode;
 import ast.Visitor;
 
+import java.util.Objects;
+
 public class TableNode implements OrderableQuery, LimitableQuery {
 
     private final String tableName;
+    private final int hash;
 
     public TableNode(String tableName) {
         this.tableName = tableName;
+        this.hash = Objects.hash(tableName);
     }
 
     @Override
@@ -22,6 +26,19 @@ public class TableNode implements OrderableQuery, LimitableQuery {
         return tableName;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TableNode other = (TableNode) o;
+        return hash == other.hash && Objects.equals(tableName, other.tableName);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "Table(" + tableName + ")";
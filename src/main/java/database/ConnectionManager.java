@@ -1,70 +1,105 @@
 package database;
 
-import com.pgvector.PGvector;
-
 import java.io.IOException;
 import java.io.InputStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Properties;
 
+/**
+ * Owns the process-wide {@link ConnectionPool}.
+ *
+ * <p>The configuration in {@code db.properties} is read and the JDBC driver is loaded exactly once,
+ * when the pool is first needed. Optional pool settings (with their defaults):
+ * <ul>
+ *     <li>{@code db.pool.maxSize} (8) - maximum number of open connections</li>
+ *     <li>{@code db.pool.minIdle} (2) - connections opened up front</li>
+ *     <li>{@code db.pool.borrowTimeoutMillis} (30000) - how long to wait for a free connection</li>
+ *     <li>{@code db.pool.validationTimeoutSeconds} (2) - timeout of the liveness check on borrow</li>
+ *     <li>{@code db.pool.validationIntervalMillis} (5000) - skip the liveness check for recently used connections</li>
+ * </ul>
+ */
 public class ConnectionManager {
 
-    private static volatile Connection connection;
+    private static volatile ConnectionPool pool;
+    // Lower bound for the pool size requested by callers, applied even before the pool exists.
+    private static int minimumCapacity = 0;
     private ConnectionManager() {}
 
-    public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+    /**
+     * Returns the shared pool, creating and pre-warming it on first use.
+     */
+    public static ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
             synchronized (ConnectionManager.class) {
-                if (connection == null || connection.isClosed()) {
-                    try {
-                        Properties props = new Properties();
-                        try (InputStream input = ConnectionManager.class.getClassLoader().getResourceAsStream("db.properties")) {
-                            if (input == null) {
-                                System.out.println("Sorry, unable to find db.properties");
-                                throw new RuntimeException("db.properties not found in classpath");
-                            }
-                            props.load(input);
-                        }
-
-                        Class.forName("org.postgresql.Driver");
+                if (pool == null) {
+                    pool = createPool();
+                }
+            }
+        }
+        return pool;
+    }
 
-                        connection = DriverManager.getConnection(
-                                props.getProperty("db.url"),
-                                props.getProperty("db.user"),
-                                props.getProperty("db.password")
-                        );
+    /**
+     * Borrows a connection from the shared pool. Close the returned object to give it back.
+     * @return A validated connection with the pgvector types registered.
+     */
+    public static PooledConnection borrowConnection() throws SQLException {
+        return getPool().borrow();
+    }
 
-                        // Get a statement and explicitly add the vector type to the connection's type map.
-                        // This tells the JDBC driver how to handle the 'vector' type from the database.
-                        try (Statement stmt = connection.createStatement()) {
-                            PGvector.addVectorType(connection);
-                        }
+    /**
+     * Makes sure the pool can hold at least {@code size} connections at once, e.g. one per worker thread.
+     * Does not open any connection.
+     */
+    public static void ensureCapacity(int size) {
+        synchronized (ConnectionManager.class) {
+            minimumCapacity = Math.max(minimumCapacity, size);
+            if (pool != null) {
+                pool.ensureCapacity(size);
+            }
+        }
+    }
 
-                    } catch (IOException | ClassNotFoundException e) {
-                        throw new RuntimeException("Failed to load database configuration", e);
-                    }
+    private static ConnectionPool createPool() throws SQLException {
+        try {
+            Properties props = new Properties();
+            try (InputStream input = ConnectionManager.class.getClassLoader().getResourceAsStream("db.properties")) {
+                if (input == null) {
+                    System.out.println("Sorry, unable to find db.properties");
+                    throw new RuntimeException("db.properties not found in classpath");
                 }
+                props.load(input);
             }
+
+            Class.forName("org.postgresql.Driver");
+
+            ConnectionPool newPool = new ConnectionPool(
+                    props.getProperty("db.url"),
+                    props.getProperty("db.user"),
+                    props.getProperty("db.password"),
+                    Math.max(minimumCapacity, Integer.parseInt(props.getProperty("db.pool.maxSize", "8"))),
+                    Long.parseLong(props.getProperty("db.pool.borrowTimeoutMillis", "30000")),
+                    Integer.parseInt(props.getProperty("db.pool.validationTimeoutSeconds", "2")),
+                    Long.parseLong(props.getProperty("db.pool.validationIntervalMillis", "5000"))
+            );
+            newPool.prewarm(Integer.parseInt(props.getProperty("db.pool.minIdle", "2")));
+            return newPool;
+
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Failed to load database configuration", e);
         }
-        return connection;
     }
 
+    /**
+     * Shuts down the shared pool and closes its connections.
+     * A later call to {@link #getPool()} creates a new pool.
+     */
     public static void closeConnection() {
         synchronized (ConnectionManager.class) {
-            if (connection != null) {
-                try {
-                    if (!connection.isClosed()) {
-                        connection.close();
-                    }
-                } catch (SQLException e) {
-                    System.err.println("Error closing the database connection.");
-                    e.printStackTrace();
-                } finally {
-                    connection = null;
-                }
+            if (pool != null) {
+                System.out.println("Connection pool: " + pool.getMetrics());
+                pool.shutdown();
+                pool = null;
             }
         }
     }
@@ -0,0 +1,231 @@
+package database;
+
+import com.pgvector.PGvector;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, bounded pool of PostgreSQL connections with pgvector types registered.
+ *
+ * <p>Connections are created up front by {@link #prewarm(int)} and on demand up to {@code maxSize}.
+ * A borrowed connection is validated before it is handed out if it has been idle for longer
+ * than the validation interval; broken connections are discarded and replaced transparently.
+ */
+public class ConnectionPool {
+
+    /**
+     * A point-in-time snapshot of the pool counters.
+     */
+    public record Metrics(int totalConnections, int idleConnections, long borrows, long connectionsCreated,
+                          long validationFailures, long connectionsDiscarded, double averageWaitMillis) {
+        @Override
+        public String toString() {
+            return String.format("connections=%d (idle=%d), borrows=%d, created=%d, validationFailures=%d, discarded=%d, avgWait=%.3fms",
+                    totalConnections, idleConnections, borrows, connectionsCreated, validationFailures,
+                    connectionsDiscarded, averageWaitMillis);
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private volatile int maxSize;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long validationIntervalMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    // --- Metrics ---
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong connectionsDiscarded = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * @param url JDBC url of the database.
+     * @param user Database user.
+     * @param password Database password.
+     * @param maxSize The maximum number of open connections.
+     * @param borrowTimeoutMillis How long {@link #borrow()} waits for a free connection before failing.
+     * @param validationTimeoutSeconds Timeout of the liveness check done on borrow.
+     * @param validationIntervalMillis Connections used more recently than this are not re-validated.
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                          int validationTimeoutSeconds, long validationIntervalMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1.");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    /**
+     * Opens connections until at least {@code count} are idle, so the first queries of a run
+     * do not pay for connection setup.
+     */
+    public void prewarm(int count) throws SQLException {
+        while (idle.size() < count && reserveSlot()) {
+            try {
+                idle.offerLast(createConnection());
+            } catch (SQLException | RuntimeException e) {
+                totalConnections.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Raises the maximum pool size, e.g. to give every worker thread its own connection.
+     */
+    public void ensureCapacity(int size) {
+        synchronized (this) {
+            if (size > maxSize) {
+                maxSize = size;
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection. Closing the returned object gives the connection back to the pool.
+     * @return A validated connection.
+     * @throws SQLException if no connection becomes available within the borrow timeout.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        try {
+            while (true) {
+                PooledConnection pooled = idle.pollFirst();
+                if (pooled == null && reserveSlot()) {
+                    try {
+                        pooled = createConnection();
+                    } catch (SQLException | RuntimeException e) {
+                        totalConnections.decrementAndGet();
+                        throw e;
+                    }
+                }
+                if (pooled == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLException("Timed out waiting for a pooled connection after " + borrowTimeoutMillis + " ms.");
+                    }
+                    try {
+                        // Wait in short slices so a slot freed by a discarded connection is noticed too.
+                        pooled = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+                    }
+                    if (pooled == null) {
+                        continue;
+                    }
+                }
+                if (isUsable(pooled)) {
+                    pooled.markBorrowed();
+                    borrows.incrementAndGet();
+                    return pooled;
+                }
+                validationFailures.incrementAndGet();
+                discard(pooled);
+            }
+        } finally {
+            totalWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Called by {@link PooledConnection#close()}.
+     */
+    void release(PooledConnection pooled) {
+        if (shutdown || pooled.isBroken()) {
+            discard(pooled);
+            return;
+        }
+        pooled.markReturned();
+        // LIFO order keeps the most recently used (and therefore most likely alive) connections hot.
+        idle.offerFirst(pooled);
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows.
+     * Borrowed connections are closed when they are returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public Metrics getMetrics() {
+        long borrowCount = borrows.get();
+        double averageWaitMillis = borrowCount == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / borrowCount;
+        return new Metrics(totalConnections.get(), idle.size(), borrowCount, connectionsCreated.get(),
+                validationFailures.get(), connectionsDiscarded.get(), averageWaitMillis);
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        // Explicitly add the vector type to the connection's type map.
+        // This tells the JDBC driver how to handle the 'vector' type from the database.
+        PGvector.addVectorType(connection);
+        connectionsCreated.incrementAndGet();
+        return new PooledConnection(this, connection);
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            Connection connection = pooled.getConnection();
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.getLastReturnedMillis() < validationIntervalMillis) {
+                return true;
+            }
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        connectionsDiscarded.incrementAndGet();
+        try {
+            pooled.getConnection().close();
+        } catch (SQLException e) {
+            System.err.println("Error closing a discarded database connection.");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package database;
+
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import model.Table;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}.
+ *
+ * <p>Closing this object returns the underlying connection to the pool instead of closing it,
+ * so it is meant to be used in a try-with-resources block. The physical connection must not
+ * be closed directly.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    /**
+     * Map key comparing tables by identity; {@link Table#equals} is a tolerant content comparison.
+     */
+    private record IdentityKey(Table table) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).table == table;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(table);
+        }
+    }
+
+    // Upper bound on the number of prepared statements kept open per connection.
+    private static final int STATEMENT_CACHE_SIZE = 256;
+    // Upper bound on the number of expected-output temp tables kept per connection.
+    private static final int OUTPUT_TABLE_CACHE_SIZE = 8;
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statementCache;
+    private final Map<IdentityKey, String> outputTables;
+    private long lastReturnedMillis;
+    private boolean broken;
+    // Set once the connection is given back, so closing it again does not give it back twice.
+    private boolean returned;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.lastReturnedMillis = System.currentTimeMillis();
+        // Access-ordered map: the least recently used statement is evicted (and closed) first.
+        this.statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        // Temp tables only exist in this session, so they are tracked per connection.
+        // Tables are compared by identity: the same expected output object is loaded once.
+        this.outputTables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IdentityKey, String> eldest) {
+                if (size() > OUTPUT_TABLE_CACHE_SIZE) {
+                    dropQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The physical JDBC connection. Do not close it; close this object instead.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns a prepared statement for the SQL template, reusing the one prepared earlier on this
+     * connection if there is one. Statements are prepared on the server on their first execution,
+     * so parsing and planning happen once per template rather than once per query.
+     * The statement stays owned by the cache: close its result sets, not the statement itself.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statementCache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+            statementCache.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * @return The name of the temp table holding this expected output on this connection, or null if it is not loaded.
+     */
+    public String getOutputTable(Table expected) {
+        return outputTables.get(new IdentityKey(expected));
+    }
+
+    /**
+     * Records that an expected output has been loaded into a temp table on this connection.
+     * The least recently used temp table is dropped once too many are loaded.
+     */
+    public void putOutputTable(Table expected, String tableName) {
+        outputTables.put(new IdentityKey(expected), tableName);
+    }
+
+    /**
+     * Marks the connection as unusable so the pool discards it instead of reusing it.
+     */
+    public void invalidate() {
+        this.broken = true;
+    }
+
+    /**
+     * Invalidates the connection if the exception indicates a connection-level failure
+     * (SQLSTATE class 08), as opposed to an error in the query itself.
+     */
+    public void invalidateIfBroken(SQLException e) {
+        String sqlState = e.getSQLState();
+        if (sqlState != null && sqlState.startsWith("08")) {
+            invalidate();
+        }
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    long getLastReturnedMillis() {
+        return lastReturnedMillis;
+    }
+
+    void markReturned() {
+        this.lastReturnedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Called by the pool when the connection is handed out, so that the next {@link #close()} returns it.
+     */
+    synchronized void markBorrowed() {
+        this.returned = false;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing a cached prepared statement.");
+        }
+    }
+
+    private void dropQuietly(String tableName) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + tableName);
+        } catch (SQLException e) {
+            System.err.println("Error dropping temp table " + tableName + ".");
+        }
+    }
+
+    /**
+     * Gives the connection back to the pool. Closing it again before it is borrowed again has no effect,
+     * so the connection is never handed to two borrowers.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (returned) {
+                return;
+            }
+            returned = true;
+        }
+        pool.release(this);
+    }
+}
@@ -1,14 +1,111 @@
 package database;
 
 import com.pgvector.PGvector; // Correct import for the library
+import model.ParameterizedQuery;
 import model.Table;
 import model.Vector;
 
+import org.postgresql.jdbc.PgStatement;
+
 import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+public class QueryExecutor implements AutoCloseable {
+
+    /**
+     * A unit of work that needs a database connection.
+     */
+    @FunctionalInterface
+    private interface ConnectionTask<T> {
+        T run(PooledConnection pooled) throws SQLException;
+    }
+
+    /**
+     * The execution of a statement, see {@link #cancellable}.
+     */
+    @FunctionalInterface
+    private interface StatementTask<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * The outcome of one query: its result, or the SQLSTATE it failed with.
+     * @param result The result, or empty if the query failed.
+     * @param failureState The SQLSTATE of the failure, or null if the query succeeded or the state is unknown.
+     */
+    public record QueryOutcome(Optional<Table> result, String failureState) {
+
+        static QueryOutcome of(Optional<Table> result) {
+            return result.isPresent() ? new QueryOutcome(result, null) : failed(ROW_LIMIT_EXCEEDED);
+        }
+
+        public static QueryOutcome failed(String sqlState) {
+            return new QueryOutcome(Optional.empty(), sqlState);
+        }
+
+        /**
+         * @return true if the query failed in a way that running it again on the same data would repeat:
+         *         a syntax or access rule violation (class 42), a data exception (class 22), or a result
+         *         with more rows than accepted (54000). Connection failures (class 08), cancellations and
+         *         timeouts (57014) and failures of unknown state are not deterministic.
+         */
+        public boolean isDeterministicFailure() {
+            return failureState != null && (failureState.startsWith(SYNTAX_ERROR_OR_ACCESS_RULE_VIOLATION)
+                    || failureState.startsWith(DATA_EXCEPTION) || failureState.equals(ROW_LIMIT_EXCEEDED));
+        }
+    }
 
-public class QueryExecutor {
+    // SQLSTATE query_canceled, as reported by the server for cancelled and timed out statements.
+    private static final String QUERY_CANCELED = "57014";
+    // SQLSTATE program_limit_exceeded, used for results with more rows than the caller accepts.
+    private static final String ROW_LIMIT_EXCEEDED = "54000";
+    // SQLSTATE classes of errors that depend only on the query and the data.
+    private static final String SYNTAX_ERROR_OR_ACCESS_RULE_VIOLATION = "42";
+    private static final String DATA_EXCEPTION = "22";
+
+    /**
+     * Row limit meaning that every row of a result is fetched.
+     */
+    public static final int NO_ROW_LIMIT = Integer.MAX_VALUE;
+
+    // Source of unique temp table names for expected outputs.
+    private static final AtomicLong OUTPUT_TABLE_COUNTER = new AtomicLong();
+
+    // When true, this executor keeps one pooled connection for its whole lifetime
+    // instead of borrowing a connection for every query.
+    private final boolean dedicated;
+    private PooledConnection dedicatedConnection;
+
+    // Statements currently executing, so that cancel() can reach them from another thread.
+    private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile Instant deadline;
+    private volatile Duration statementTimeout;
+
+    public QueryExecutor() {
+        this(false);
+    }
+
+    private QueryExecutor(boolean dedicated) {
+        this.dedicated = dedicated;
+    }
+
+    /**
+     * Creates an executor that holds on to one pooled connection, for use by a single worker thread.
+     * The connection is borrowed on first use and given back to the pool by {@link #close()}.
+     * @return A new executor that does not share its connection.
+     */
+    public static QueryExecutor withDedicatedConnection() {
+        return new QueryExecutor(true);
+    }
 
     /**
      * Executes a SQL query and returns the results as a Table object.
@@ -22,47 +119,448 @@ public class QueryExecutor {
 
         System.out.println("Executing SQL: " + sql);
 
-        try (Connection conn = ConnectionManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try {
+            return withConnection(pooled -> {
+                try (Statement stmt = pooled.getConnection().createStatement()) {
+                    return cancellable(stmt, 1, () -> {
+                        try (ResultSet rs = stmt.executeQuery(sql)) {
+                            // This returns a Table object with full schema information.
+                            return convertResultSetToTable(rs);
+                        }
+                    });
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("SQL execution failed for query: " + sql);
+            throw new RuntimeException("Database query execution failed", e);
+        }
+    }
 
-            // The main logic is now to convert the ResultSet to our rich Table object.
-            // Using try-with-resources ensures all resources (conn, stmt, rs) are closed automatically.
-            // Note: We get a new connection each time for simplicity in this model,
-            // which is fine for a synthesizer but different from the singleton ConnectionManager.
-            // Let's stick to the ConnectionManager for consistency.
-            // Reverting the try-with-resources for the connection.
+    /**
+     * Executes a parameterized query using a cached, server-side prepared statement for its template.
+     * Vector parameters are bound as {@link PGvector}.
+     * @param query The SQL template and its bind values.
+     * @return a table of the result.
+     */
+    public Table executeQuery(ParameterizedQuery query) {
+        return executeQuery(query, NO_ROW_LIMIT);
+    }
+
+    /**
+     * Executes a parameterized query like {@link #executeQuery(ParameterizedQuery)}, but stops reading
+     * its result after {@code maxRows} rows.
+     * @param maxRows The largest result the caller accepts, or {@link #NO_ROW_LIMIT}.
+     * @return a table of the result.
+     * @throws RuntimeException if the query fails or returns more than {@code maxRows} rows.
+     */
+    public Table executeQuery(ParameterizedQuery query, int maxRows) {
+        System.out.println("Executing SQL: " + query);
+
+        try {
+            return withConnection(pooled -> {
+                PreparedStatement stmt = pooled.prepare(query.sql());
+                bindParameters(stmt, query.parameters());
+                limitRows(stmt, maxRows);
+                return cancellable(stmt, 1, () -> {
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return convertResultSetToTable(rs, maxRows).orElseThrow(() -> new SQLException(
+                                "The query returned more than " + maxRows + " rows.", ROW_LIMIT_EXCEEDED));
+                    }
+                });
+            });
         } catch (SQLException e) {
-            // Exception handling needs to be outside the try-with-resources if conn is not declared there
+            System.err.println("SQL execution failed for query: " + query);
+            throw new RuntimeException("Database query execution failed", e);
         }
+    }
 
-        // Sticking to the original structure for consistency with ConnectionManager
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
+    /**
+     * Executes several queries in a single round trip and returns one result per query.
+     *
+     * <p>The queries are sent as one multi-statement prepared statement, which the driver pipelines
+     * (all statements are sent before a single sync, and the results are read back in order).
+     * A failing statement aborts the remaining ones on the server. In that case the batch is split in
+     * halves and retried, so only the failing queries are reported as empty. That takes a logarithmic
+     * number of extra round trips per failure. A batch that timed out is instead retried one query at a
+     * time, see {@link #setStatementTimeout}.
+     *
+     * @param queries The queries to execute.
+     * @return For each query, in order, its result, or empty if the query failed.
+     */
+    public List<Optional<Table>> executeBatch(List<ParameterizedQuery> queries) {
+        return executeBatch(queries, NO_ROW_LIMIT);
+    }
+
+    /**
+     * Executes several queries in a single round trip like {@link #executeBatch(List)}, but stops reading
+     * each result after {@code maxRows} rows. The server sends at most one row more than that per query.
+     * @param maxRows The largest result the caller accepts, or {@link #NO_ROW_LIMIT}.
+     * @return For each query, in order, its result, or empty if the query failed or returned more than
+     *         {@code maxRows} rows.
+     */
+    public List<Optional<Table>> executeBatch(List<ParameterizedQuery> queries, int maxRows) {
+        return executeBatchOutcomes(queries, maxRows).stream().map(QueryOutcome::result)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Executes several queries like {@link #executeBatch(List, int)}, but also reports why each failed query
+     * failed, so callers can tell failures worth remembering from transient ones.
+     * @return For each query, in order, its outcome. A result with more than {@code maxRows} rows is a
+     *         failure with SQLSTATE 54000.
+     */
+    public List<QueryOutcome> executeBatchOutcomes(List<ParameterizedQuery> queries, int maxRows) {
+        if (queries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        System.out.println("Executing batch of " + queries.size() + " queries.");
 
         try {
-            conn = ConnectionManager.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            return withConnection(pooled -> executeBatch(pooled, queries, maxRows));
+        } catch (SQLException e) {
+            System.err.println("Batch execution failed.");
+            throw new RuntimeException("Database batch execution failed", e);
+        }
+    }
 
-            // This now returns a Table object with full schema information.
-            return convertResultSetToTable(rs);
+    private List<QueryOutcome> executeBatch(PooledConnection pooled, List<ParameterizedQuery> queries,
+                                            int maxRows) throws SQLException {
+        List<QueryOutcome> results = new ArrayList<>(queries.size());
+        try {
+            if (queries.size() == 1) {
+                // A single query can use the statement cache.
+                ParameterizedQuery query = queries.get(0);
+                PreparedStatement stmt = pooled.prepare(query.sql());
+                bindParameters(stmt, query.parameters(), 0);
+                limitRows(stmt, maxRows);
+                results.add(QueryOutcome.of(cancellable(stmt, 1, () -> {
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return convertResultSetToTable(rs, maxRows);
+                    }
+                })));
+                return results;
+            }
 
+            StringBuilder sql = new StringBuilder();
+            for (ParameterizedQuery query : queries) {
+                sql.append(query.sql()).append(";\n");
+            }
+            try (PreparedStatement stmt = pooled.getConnection().prepareStatement(sql.toString())) {
+                int offset = 0;
+                for (ParameterizedQuery query : queries) {
+                    bindParameters(stmt, query.parameters(), offset);
+                    offset += query.parameters().size();
+                }
+                // The driver applies the row limit to each statement of the batch.
+                limitRows(stmt, maxRows);
+                cancellable(stmt, queries.size(), () -> {
+                    stmt.execute();
+                    do {
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            results.add(QueryOutcome.of(convertResultSetToTable(rs, maxRows)));
+                        }
+                    } while (stmt.getMoreResults());
+                    return null;
+                });
+            }
+            return results;
         } catch (SQLException e) {
-            System.err.println("SQL execution failed for query: " + sql);
-            throw new RuntimeException("Database query execution failed", e);
+            pooled.invalidateIfBroken(e);
+            if (pooled.isBroken() || isStopped()) {
+                // Retrying would only fail again.
+                throw e;
+            }
+            if (queries.size() == 1) {
+                results.clear();
+                results.add(QueryOutcome.failed(e.getSQLState()));
+                return results;
+            }
+            List<QueryOutcome> retried = new ArrayList<>(queries.size());
+            if (QUERY_CANCELED.equals(e.getSQLState())) {
+                // The batch timed out. Halving it would give each half the time of its queries again,
+                // so a single slow query would hold the connection for about twice the batch's time.
+                // Each query is run on its own with its own timeout instead.
+                for (ParameterizedQuery query : queries) {
+                    retried.addAll(executeBatch(pooled, List.of(query), maxRows));
+                }
+                return retried;
+            }
+            int middle = queries.size() / 2;
+            retried.addAll(executeBatch(pooled, queries.subList(0, middle), maxRows));
+            retried.addAll(executeBatch(pooled, queries.subList(middle, queries.size()), maxRows));
+            return retried;
+        }
+    }
+
+    /**
+     * Cancels the statements running on this executor, from any thread, and makes every later statement
+     * fail right away. Failed statements are reported as by any other database error. Meant to stop
+     * one piece of work for good: an executor shared with other work should not be cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement stmt : runningStatements) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                System.err.println("Could not cancel a running statement: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sets the time by which every statement of this executor must have finished. Statements are given
+     * the remaining time as their query timeout, and fail right away once it has passed.
+     * @param deadline The deadline, or null for none.
+     */
+    public void setDeadline(Instant deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Sets the time each candidate may run for. A batch of queries is given this time per query, and
+     * statements never run past the {@link #setDeadline deadline}. The queries of a batch that times out
+     * are retried one at a time, each with this time, so only the slow queries are reported as failed.
+     * @param statementTimeout The time allowed per query, or null for no limit.
+     */
+    public void setStatementTimeout(Duration statementTimeout) {
+        this.statementTimeout = statementTimeout;
+    }
+
+    /**
+     * @return true if this executor was cancelled or its deadline has passed.
+     */
+    public boolean isStopped() {
+        Instant deadline = this.deadline;
+        return cancelled || (deadline != null && !Instant.now().isBefore(deadline));
+    }
+
+    /**
+     * Runs a statement so that {@link #cancel()} can cancel it, with a query timeout for the statement
+     * timeout of its {@code queryCount} queries and the deadline.
+     * The timeout is set on every run, since cached prepared statements are shared with other executors.
+     */
+    private <T> T cancellable(Statement stmt, int queryCount, StatementTask<T> task) throws SQLException {
+        runningStatements.add(stmt);
+        try {
+            // The statement is registered before the flag is read, so a concurrent cancel() sees one or the other.
+            if (cancelled) {
+                throw new SQLException("The query executor was cancelled.", QUERY_CANCELED);
+            }
+            long timeoutMillis = 0;
+            Duration statementTimeout = this.statementTimeout;
+            if (statementTimeout != null) {
+                timeoutMillis = Math.max(1, statementTimeout.multipliedBy(queryCount).toMillis());
+            }
+            Instant deadline = this.deadline;
+            if (deadline != null) {
+                long remainingMillis = Duration.between(Instant.now(), deadline).toMillis();
+                if (remainingMillis <= 0) {
+                    throw new SQLException("The query deadline has passed.", QUERY_CANCELED);
+                }
+                timeoutMillis = timeoutMillis == 0 ? remainingMillis : Math.min(timeoutMillis, remainingMillis);
+            }
+            if (stmt.isWrapperFor(PgStatement.class)) {
+                stmt.unwrap(PgStatement.class).setQueryTimeoutMs(timeoutMillis);
+            } else {
+                stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (timeoutMillis + 999) / 1000));
+            }
+            return task.run();
         } finally {
+            runningStatements.remove(stmt);
+        }
+    }
+
+    /**
+     * Compares candidates with the expected output inside the database, so that only a boolean per
+     * candidate is transferred instead of the candidate's rows.
+     *
+     * <p>The expected output is loaded into a temp table the first time it is used on a connection.
+     * Each candidate is then checked with a multiset difference in both directions
+     * ({@code EXCEPT ALL}), with columns aligned by name. Unlike {@link Table#equals}, values are
+     * compared exactly, without float or vector tolerance. A candidate is read only up to one row more
+     * than the expected output has, which is enough to tell that it does not match.
+     *
+     * @param candidates The candidate queries. Their output columns must have the names of the expected columns.
+     * @param expected The expected output table.
+     * @return For each candidate, in order, whether it produces exactly the expected rows.
+     *         Candidates that fail to execute do not match.
+     * @throws UnsupportedOperationException if the expected output has a column type that cannot be loaded.
+     */
+    public boolean[] matchesExpected(List<ParameterizedQuery> candidates, Table expected) {
+        List<QueryOutcome> outcomes = matchesExpectedOutcomes(candidates, expected);
+        boolean[] matched = new boolean[candidates.size()];
+        for (int i = 0; i < outcomes.size(); i++) {
+            matched[i] = outcomes.get(i).result()
+                    .map(result -> Boolean.TRUE.equals(result.getRows().get(0).get(0)))
+                    .orElse(false);
+        }
+        return matched;
+    }
+
+    /**
+     * Compares candidates like {@link #matchesExpected}, but also reports why each failed comparison
+     * failed, so callers can tell failures worth remembering from transient ones.
+     * @return For each candidate, in order, the outcome of its comparison: a single boolean row if it ran.
+     */
+    public List<QueryOutcome> matchesExpectedOutcomes(List<ParameterizedQuery> candidates, Table expected) {
+        System.out.println("Comparing " + candidates.size() + " queries with the expected output in the database.");
+
+        try {
+            return withConnection(pooled -> {
+                String outputTable = loadExpectedOutput(pooled, expected);
+                String columnList = expected.getColumnNames().stream()
+                        .map(QueryExecutor::quoteIdentifier)
+                        .collect(Collectors.joining(", "));
+
+                List<ParameterizedQuery> comparisons = new ArrayList<>(candidates.size());
+                for (ParameterizedQuery candidate : candidates) {
+                    String sql = "WITH candidate AS MATERIALIZED (SELECT * FROM (" + candidate.sql() + ") AS unbounded"
+                            + " LIMIT " + ((long) expected.getRowCount() + 1) + ") SELECT"
+                            + " NOT EXISTS (SELECT " + columnList + " FROM candidate EXCEPT ALL SELECT " + columnList + " FROM " + outputTable + ")"
+                            + " AND NOT EXISTS (SELECT " + columnList + " FROM " + outputTable + " EXCEPT ALL SELECT " + columnList + " FROM candidate)";
+                    comparisons.add(new ParameterizedQuery(sql, candidate.parameters()));
+                }
+
+                return executeBatch(pooled, comparisons, NO_ROW_LIMIT);
+            });
+        } catch (SQLException e) {
+            System.err.println("Server-side comparison failed.");
+            throw new RuntimeException("Database comparison failed", e);
+        }
+    }
+
+    /**
+     * Loads the expected output into a temp table on this connection, unless it already is.
+     * @return The name of the temp table.
+     */
+    private String loadExpectedOutput(PooledConnection pooled, Table expected) throws SQLException {
+        String tableName = pooled.getOutputTable(expected);
+        if (tableName != null) {
+            return tableName;
+        }
+
+        String columnDefinitions = expected.getColumns().stream()
+                .map(column -> quoteIdentifier(column.getName()) + " " + convertInternalTypeToDbTypeName(column.getType()))
+                .collect(Collectors.joining(", "));
+        tableName = "expected_output_" + OUTPUT_TABLE_COUNTER.incrementAndGet();
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE " + tableName + " (" + columnDefinitions + ")");
+        }
+
+        String placeholders = expected.getColumns().stream().map(column -> "?").collect(Collectors.joining(", "));
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + tableName + " VALUES (" + placeholders + ")")) {
+            for (List<Object> row : expected.getRows()) {
+                bindParameters(insert, row);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        pooled.putOutputTable(expected, tableName);
+        return tableName;
+    }
+
+    /**
+     * The inverse of {@link #convertDbTypeNameToInternalType(String)}.
+     */
+    private String convertInternalTypeToDbTypeName(String internalType) {
+        switch (internalType.toLowerCase()) {
+            case "vector":
+                return "vector";
+            case "text":
+                return "text";
+            case "long":
+                return "bigint";
+            case "double":
+                return "double precision";
+            case "boolean":
+                return "boolean";
+            default:
+                throw new UnsupportedOperationException("Cannot load a column of type " + internalType + " into the database.");
+        }
+    }
+
+    private static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private void bindParameters(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        bindParameters(stmt, parameters, 0);
+    }
+
+    private void bindParameters(PreparedStatement stmt, List<Object> parameters, int offset) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            if (value == null) {
+                stmt.setNull(offset + i + 1, Types.OTHER);
+            } else if (value instanceof Vector) {
+                stmt.setObject(offset + i + 1, new PGvector(((Vector) value).getData()));
+            } else {
+                stmt.setObject(offset + i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Runs a task on this executor's dedicated connection, or on a connection borrowed from the
+     * shared pool for the duration of the task. Connections that fail at the connection level are
+     * invalidated so the pool replaces them.
+     */
+    private <T> T withConnection(ConnectionTask<T> task) throws SQLException {
+        if (dedicated) {
+            if (dedicatedConnection == null) {
+                dedicatedConnection = ConnectionManager.borrowConnection();
+            }
             try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
+                return task.run(dedicatedConnection);
             } catch (SQLException e) {
-                System.err.println("Error closing statement or result set.");
-                e.printStackTrace();
+                dedicatedConnection.invalidateIfBroken(e);
+                if (dedicatedConnection.isBroken()) {
+                    close();
+                }
+                throw e;
+            }
+        }
+
+        try (PooledConnection pooled = ConnectionManager.borrowConnection()) {
+            try {
+                return task.run(pooled);
+            } catch (SQLException e) {
+                pooled.invalidateIfBroken(e);
+                throw e;
             }
         }
     }
 
+    /**
+     * Gives the dedicated connection back to the pool, if this executor has one.
+     */
+    @Override
+    public void close() {
+        if (dedicatedConnection != null) {
+            dedicatedConnection.close();
+            dedicatedConnection = null;
+        }
+    }
+
+    /**
+     * Makes the server send at most one row more than {@code maxRows}, so an oversized result is recognized
+     * without being transferred. Set on every run, since cached prepared statements are shared.
+     */
+    private void limitRows(Statement stmt, int maxRows) throws SQLException {
+        stmt.setMaxRows(maxRows >= NO_ROW_LIMIT - 1 ? 0 : maxRows + 1);
+    }
+
+    /**
+     * Converts a ResultSet like {@link #convertResultSetToTable(ResultSet)}, unless it has too many rows.
+     * @return The table, or empty if the result has more than {@code maxRows} rows.
+     */
+    private Optional<Table> convertResultSetToTable(ResultSet rs, int maxRows) throws SQLException {
+        Table table = convertResultSetToTable(rs, (long) maxRows + 1);
+        return table.getRowCount() > maxRows ? Optional.empty() : Optional.of(table);
+    }
+
     /**
      * Converts a JDBC ResultSet to our custom Table object, including rich column metadata.
      * @param rs The ResultSet from the database query.
@@ -70,6 +568,13 @@ public class QueryExecutor {
      * @throws SQLException
      */
     private Table convertResultSetToTable(ResultSet rs) throws SQLException {
+        return convertResultSetToTable(rs, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param rowLimit The number of rows after which reading stops.
+     */
+    private Table convertResultSetToTable(ResultSet rs, long rowLimit) throws SQLException {
         ResultSetMetaData metaData = rs.getMetaData();
         int columnCount = metaData.getColumnCount();
 
@@ -86,7 +591,7 @@ public class QueryExecutor {
 
         // 2. Extract all row data, normalizing types as we go.
         List<List<Object>> rows = new ArrayList<>();
-        while (rs.next()) {
+        while (rows.size() < rowLimit && rs.next()) {
             List<Object> row = new ArrayList<>();
             for (int i = 1; i <= columnCount; i++) {
                 Object obj = rs.getObject(i);
@@ -0,0 +1,140 @@
+package database;
+
+import model.ParameterizedQuery;
+import model.Table;
+import model.Vector;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A bounded cache of query results, keyed by SQL template and bound constants, so that a candidate
+ * enumerated more than once is executed only once.
+ *
+ * <p>The least recently used results are evicted once either the number of entries or the estimated
+ * memory use exceeds its bound. Failed queries may be cached too, as an empty result; callers should
+ * only cache failures that would repeat. Thread-safe, so worker threads can share one instance.
+ */
+public class ResultCache {
+
+    /**
+     * A point-in-time snapshot of the cache counters.
+     */
+    public record Stats(long hits, long misses, long evictions, int entries, long estimatedBytes) {
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, evictions=%d, entries=%d, size=%.1fKiB",
+                    hits, misses, evictions, entries, estimatedBytes / 1024.0);
+        }
+    }
+
+    private record Entry(Optional<Table> result, long bytes) {}
+
+    // Rough object sizes, in bytes, used to estimate the memory held by a result.
+    private static final long OBJECT_OVERHEAD = 16;
+    private static final long REFERENCE_SIZE = 8;
+    private static final long LIST_OVERHEAD = 40;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    // Access-ordered map: the least recently used result is evicted first.
+    private final LinkedHashMap<ParameterizedQuery, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long estimatedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries The maximum number of cached results.
+     * @param maxBytes The maximum estimated memory held by cached results and their keys.
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Result cache bounds must be at least 1.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return The cached result of the query (empty if the query failed), or null if it is not cached.
+     */
+    public synchronized Optional<Table> get(ParameterizedQuery query) {
+        Entry entry = entries.get(query);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result();
+    }
+
+    /**
+     * Caches the result of a query, evicting the least recently used results as needed.
+     * A result larger than the memory bound on its own is not cached.
+     * @param result The result, or empty if the query failed.
+     */
+    public synchronized void put(ParameterizedQuery query, Optional<Table> result) {
+        long bytes = estimateSize(query) + result.map(ResultCache::estimateSize).orElse(0L);
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(query, new Entry(result, bytes));
+        if (previous != null) {
+            estimatedBytes -= previous.bytes();
+        }
+        estimatedBytes += bytes;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || estimatedBytes > maxBytes) {
+            estimatedBytes -= eldest.next().bytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), estimatedBytes);
+    }
+
+    private static long estimateSize(ParameterizedQuery query) {
+        return OBJECT_OVERHEAD + estimateSize(query.sql()) + estimateRowSize(query.parameters());
+    }
+
+    private static long estimateSize(Table table) {
+        long bytes = OBJECT_OVERHEAD + LIST_OVERHEAD + REFERENCE_SIZE * table.getRowCount();
+        for (List<Object> row : table.getRows()) {
+            bytes += estimateRowSize(row);
+        }
+        return bytes;
+    }
+
+    private static long estimateRowSize(List<Object> values) {
+        long bytes = LIST_OVERHEAD + REFERENCE_SIZE * values.size();
+        for (Object value : values) {
+            bytes += estimateValueSize(value);
+        }
+        return bytes;
+    }
+
+    private static long estimateValueSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            // Shared instances.
+            return 0;
+        }
+        if (value instanceof String) {
+            return estimateSize((String) value);
+        }
+        if (value instanceof Vector) {
+            return 2 * OBJECT_OVERHEAD + 4L * ((Vector) value).getDimensions();
+        }
+        return OBJECT_OVERHEAD + REFERENCE_SIZE;
+    }
+
+    private static long estimateSize(String s) {
+        return 2 * OBJECT_OVERHEAD + s.length();
+    }
+}
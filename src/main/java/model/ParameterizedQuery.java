@@ -0,0 +1,25 @@
+package model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A SQL template with {@code ?} placeholders and the values to bind to them, in order.
+ *
+ * <p>Parameter values use the same types as {@link Table} cells (e.g. {@link Vector}, String, Long),
+ * so two queries are equal exactly when they have the same template and the same constants.
+ *
+ * @param sql The SQL text with {@code ?} placeholders.
+ * @param parameters The values bound to the placeholders.
+ */
+public record ParameterizedQuery(String sql, List<Object> parameters) {
+    public ParameterizedQuery {
+        Objects.requireNonNull(sql, "SQL cannot be null.");
+        parameters = List.copyOf(parameters);
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + parameters;
+    }
+}
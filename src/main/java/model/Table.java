@@ -1,6 +1,8 @@
 package model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -9,18 +11,28 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-public class Table {
+public class Table implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String name;
+    // Declared as interfaces but always serializable: List.copyOf lists and a HashMap.
+    @SuppressWarnings("serial")
     private final List<Column> columns;
+    @SuppressWarnings("serial")
     private final List<List<Object>> rows;
     // For faster column lookup by name
+    @SuppressWarnings("serial")
     private final Map<String, Column> columnMap;
+    // Whether row order is significant when this table is compared
+    private final boolean ordered;
 
     /**
      * Inner static class to represent a table column with a name and a type.
      */
-    public static class Column {
+    public static class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private final String name;
         private final String type; // Using String for type, e.g., "vector", "text", "integer"
 
@@ -62,7 +74,19 @@ public class Table {
      * @param rows The data rows.
      */
     public Table(String name, List<Column> columns, List<List<Object>> rows) {
+        this(name, columns, rows, false);
+    }
+
+    /**
+     * @param name The name of the table.
+     * @param columns A list of Column objects defining the schema.
+     * @param rows The data rows.
+     * @param ordered If true, the rows are in a significant order (e.g. the expected output of an
+     *                ORDER BY query) and {@link #equals(Object)} compares them position by position.
+     */
+    public Table(String name, List<Column> columns, List<List<Object>> rows, boolean ordered) {
         this.name = name;
+        this.ordered = ordered;
         this.columns = List.copyOf(columns);
         this.rows = List.copyOf(rows);
 
@@ -116,8 +140,23 @@ public class Table {
         return columns.size();
     }
 
+    public boolean isOrdered() {
+        return ordered;
+    }
+
     // --- equals and its helpers, now updated to use the new structure ---
 
+    /**
+     * Two tables are equal if they have the same set of columns (name and type) and the same multiset
+     * of rows, with columns aligned by name. Floating point values match within 1e-9 and vector
+     * elements within 1e-5. If either table is ordered, the rows must also appear in the same order;
+     * rows that tie on the sort key of the producing query must then be listed in the same order too.
+     *
+     * <p>Because tolerant matching is not transitive, rows are paired greedily: every row of this table
+     * takes the first still unmatched equivalent row of the other table. Instead of scanning all rows
+     * for each row, the other table's rows are grouped by their exactly compared values and bucketed
+     * on one tolerant column, so only rows in the same or a neighbouring bucket are compared.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -128,45 +167,264 @@ public class Table {
             return false;
         }
 
-        // Compare the set of columns (name and type). Order doesn't matter.
-        if (!new HashSet<>(this.columns).equals(new HashSet<>(other.columns))) {
+        int[][] aligned = alignColumns(other);
+        if (aligned == null) {
             return false;
         }
+        int[] thisIndices = aligned[0];
+        int[] otherIndices = aligned[1];
+
+        if (this.ordered || other.ordered) {
+            for (int i = 0; i < this.getRowCount(); i++) {
+                if (!rowsAreEquivalent(this.rows.get(i), thisIndices, other.rows.get(i), otherIndices)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return matchRows(other, thisIndices, otherIndices, true) == this.getRowCount();
+    }
+
+    /**
+     * Counts the rows this table has in common with another, as multisets: rows are paired greedily
+     * as in {@link #equals}, and row order is ignored.
+     * @return The number of rows of this table paired with a row of {@code other},
+     *         or 0 if the tables do not have the same columns.
+     */
+    public int countMatchingRows(Table other) {
+        int[][] aligned = alignColumns(other);
+        return aligned == null ? 0 : matchRows(other, aligned[0], aligned[1], false);
+    }
+
+    /**
+     * Finds the rows of another table each row of this table is equivalent to, as compared by {@link #equals}.
+     * Rows are grouped by their exactly compared values first, so only rows sharing those are compared.
+     * @return For each row of this table, in order, the positions of its equivalent rows in {@code other},
+     *         or null if the tables do not have the same columns.
+     */
+    public List<BitSet> findEquivalentRows(Table other) {
+        int[][] aligned = alignColumns(other);
+        if (aligned == null) {
+            return null;
+        }
+        int[] thisIndices = aligned[0];
+        int[] otherIndices = aligned[1];
+        Map<List<Object>, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < other.getRowCount(); i++) {
+            groups.computeIfAbsent(exactKey(other.rows.get(i), otherIndices), key -> new ArrayList<>()).add(i);
+        }
+
+        List<BitSet> equivalents = new ArrayList<>(this.getRowCount());
+        for (List<Object> thisRow : this.rows) {
+            BitSet matches = new BitSet(other.getRowCount());
+            for (int candidate : groups.getOrDefault(exactKey(thisRow, thisIndices), List.of())) {
+                if (rowsAreEquivalent(thisRow, thisIndices, other.rows.get(candidate), otherIndices)) {
+                    matches.set(candidate);
+                }
+            }
+            equivalents.add(matches);
+        }
+        return equivalents;
+    }
+
+    /**
+     * Aligns the columns of two tables by name. A repeated name refers to its last occurrence.
+     * @return The positions of the shared columns in this table and in {@code other},
+     *         or null if the tables do not have the same set of columns (name and type).
+     */
+    private int[][] alignColumns(Table other) {
+        if (this.getColumnCount() != other.getColumnCount()
+                || !new HashSet<>(this.columns).equals(new HashSet<>(other.columns))) {
+            return null;
+        }
+        Map<String, Integer> thisPositions = lastPositionByName(this.columns);
+        Map<String, Integer> otherPositions = lastPositionByName(other.columns);
+        if (!thisPositions.keySet().equals(otherPositions.keySet())) {
+            return null;
+        }
+        int[] thisIndices = new int[thisPositions.size()];
+        int[] otherIndices = new int[thisPositions.size()];
+        int aligned = 0;
+        for (Map.Entry<String, Integer> entry : thisPositions.entrySet()) {
+            thisIndices[aligned] = entry.getValue();
+            otherIndices[aligned] = otherPositions.get(entry.getKey());
+            aligned++;
+        }
+        return new int[][]{thisIndices, otherIndices};
+    }
+
+    /**
+     * Pairs every row of this table with the first still unmatched equivalent row of {@code other}.
+     * @param stopAtFirstMiss If true, stops at the first row without a match.
+     * @return The number of rows paired.
+     */
+    private int matchRows(Table other, int[] thisIndices, int[] otherIndices, boolean stopAtFirstMiss) {
+        Map<List<Object>, RowBuckets> groups = new HashMap<>();
+        for (int i = 0; i < other.getRowCount(); i++) {
+            List<Object> otherRow = other.getRows().get(i);
+            groups.computeIfAbsent(exactKey(otherRow, otherIndices), RowBuckets::new).add(i, otherRow, otherIndices);
+        }
 
         boolean[] otherRowsMatched = new boolean[other.getRowCount()];
+        int matched = 0;
         for (List<Object> thisRow : this.getRows()) {
-            boolean foundMatchForThisRow = false;
-            for (int i = 0; i < other.getRowCount(); i++) {
-                if (otherRowsMatched[i]) continue;
-                List<Object> otherRow = other.getRows().get(i);
-                // Pass the full Column list to the helper
-                if (rowsAreEquivalent(thisRow, this.columns, otherRow, other.columns)) {
-                    otherRowsMatched[i] = true;
-                    foundMatchForThisRow = true;
+            RowBuckets group = groups.get(exactKey(thisRow, thisIndices));
+            int match = group == null ? -1
+                    : group.takeFirstMatch(thisRow, thisIndices, other.getRows(), otherIndices, otherRowsMatched);
+            if (match < 0) {
+                if (stopAtFirstMiss) {
                     break;
                 }
+                continue;
             }
-            if (!foundMatchForThisRow) {
-                return false;
+            otherRowsMatched[match] = true;
+            matched++;
+        }
+        return matched;
+    }
+
+    private static Map<String, Integer> lastPositionByName(List<Column> cols) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < cols.size(); i++) positions.put(cols.get(i).getName(), i);
+        return positions;
+    }
+
+    // Stand-ins for tolerantly compared values in a row's exact key.
+    private static final Object NUMBER_KEY = new Object();
+    private record VectorKey(int dimensions) {}
+
+    /**
+     * Builds a key that is equal for any two equivalent rows: exactly compared values are kept as they
+     * are, numbers and vectors are replaced by a marker (and the vector dimension).
+     */
+    private static List<Object> exactKey(List<Object> row, int[] indices) {
+        List<Object> key = new ArrayList<>(indices.length + 1);
+        key.add(row.size());
+        for (int index : indices) {
+            Object value = row.get(index);
+            if (value instanceof Number) {
+                key.add(NUMBER_KEY);
+            } else if (value instanceof Vector) {
+                key.add(new VectorKey(((Vector) value).getDimensions()));
+            } else {
+                key.add(value);
             }
         }
-        return true;
+        return key;
     }
 
-    private boolean rowsAreEquivalent(List<Object> row1, List<Column> cols1, List<Object> row2, List<Column> cols2) {
-        if (row1.size() != row2.size()) return false;
+    /**
+     * The rows of the other table sharing one exact key, bucketed on the first tolerant column (the pivot).
+     * Every index list is kept in ascending row order so the first match can be found without a full scan.
+     */
+    private static final class RowBuckets {
+        private final int pivot;
+        private final Map<Long, List<Integer>> buckets = new HashMap<>();
+        // Rows whose pivot is NaN, infinite or too large to bucket, or all rows if there is no pivot.
+        private final List<Integer> unbucketed = new ArrayList<>();
+        private final List<Integer> all = new ArrayList<>();
+
+        RowBuckets(List<Object> key) {
+            int pivot = -1;
+            for (int i = 1; i < key.size() && pivot < 0; i++) {
+                Object marker = key.get(i);
+                if (marker == NUMBER_KEY || (marker instanceof VectorKey && ((VectorKey) marker).dimensions() > 0)) {
+                    pivot = i - 1;
+                }
+            }
+            this.pivot = pivot;
+        }
 
-        Map<String, Object> map1 = new HashMap<>();
-        for (int i = 0; i < cols1.size(); i++) map1.put(cols1.get(i).getName(), row1.get(i));
+        void add(int rowIndex, List<Object> row, int[] indices) {
+            all.add(rowIndex);
+            Long bucket = pivot < 0 ? null : bucketOf(row.get(indices[pivot]));
+            if (bucket == null) {
+                unbucketed.add(rowIndex);
+            } else {
+                buckets.computeIfAbsent(bucket, b -> new ArrayList<>()).add(rowIndex);
+            }
+        }
 
-        Map<String, Object> map2 = new HashMap<>();
-        for (int i = 0; i < cols2.size(); i++) map2.put(cols2.get(i).getName(), row2.get(i));
+        /**
+         * Finds and removes the lowest-index unmatched row equivalent to {@code row}.
+         * @return Its index in the other table, or -1 if there is none.
+         */
+        int takeFirstMatch(List<Object> row, int[] indices, List<List<Object>> otherRows, int[] otherIndices,
+                           boolean[] matched) {
+            Long bucket = pivot < 0 ? null : bucketOf(row.get(indices[pivot]));
+            int best = Integer.MAX_VALUE;
+            List<Integer> bestList = null;
+            if (pivot >= 0 && bucket == null) {
+                // A NaN, infinite or huge pivot may match rows in any bucket.
+                best = firstMatch(all, Integer.MAX_VALUE, row, indices, otherRows, otherIndices, matched);
+            } else {
+                List<List<Integer>> probes = new ArrayList<>(4);
+                probes.add(unbucketed);
+                if (bucket != null) {
+                    for (long b = bucket - 1; b <= bucket + 1; b++) {
+                        List<Integer> list = buckets.get(b);
+                        if (list != null) probes.add(list);
+                    }
+                }
+                for (List<Integer> list : probes) {
+                    int found = firstMatch(list, best, row, indices, otherRows, otherIndices, matched);
+                    if (found < best) {
+                        best = found;
+                        bestList = list;
+                    }
+                }
+            }
+            if (best == Integer.MAX_VALUE) {
+                return -1;
+            }
+            if (bestList == null) {
+                Long home = pivot < 0 ? null : bucketOf(otherRows.get(best).get(otherIndices[pivot]));
+                bestList = home == null ? unbucketed : buckets.get(home);
+            }
+            bestList.remove(Integer.valueOf(best));
+            return best;
+        }
 
-        if (!map1.keySet().equals(map2.keySet())) return false;
+        private static int firstMatch(List<Integer> candidates, int limit, List<Object> row, int[] indices,
+                                      List<List<Object>> otherRows, int[] otherIndices, boolean[] matched) {
+            for (int candidate : candidates) {
+                if (candidate >= limit) break;
+                if (!matched[candidate] && rowsAreEquivalent(row, indices, otherRows.get(candidate), otherIndices)) {
+                    return candidate;
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        // Scaled values at or beyond this (also infinite ones) are not bucketed; 2^62 keeps cell +-1 within long.
+        private static final double MAX_BUCKETED = 0x1p62;
+
+        /**
+         * Maps a tolerant value to a grid cell wider than the tolerance, so equivalent values always
+         * fall into the same or adjacent cells.
+         * @return The cell, or null if the value can match values in any cell.
+         */
+        private static Long bucketOf(Object value) {
+            double d;
+            if (value instanceof Vector) {
+                d = ((Vector) value).getData()[0] * 1e4;
+            } else {
+                d = ((Number) value).doubleValue() * 1e6;
+            }
+            // Beyond the range of long, cells would saturate and their neighbours overflow.
+            if (Double.isNaN(d) || Math.abs(d) >= MAX_BUCKETED) {
+                return null;
+            }
+            return (long) Math.floor(d);
+        }
+    }
+
+    private static boolean rowsAreEquivalent(List<Object> row1, int[] indices1, List<Object> row2, int[] indices2) {
+        if (row1.size() != row2.size()) return false;
 
-        for (String key : map1.keySet()) {
-            Object val1 = map1.get(key);
-            Object val2 = map2.get(key);
+        for (int i = 0; i < indices1.length; i++) {
+            Object val1 = row1.get(indices1[i]);
+            Object val2 = row2.get(indices2[i]);
 
             if (val1 instanceof Vector && val2 instanceof Vector) {
                 if (!vectorEqualsWithTolerance((Vector) val1, (Vector) val2, 1e-5f)) return false;
@@ -184,11 +442,11 @@ public class Table {
         return true;
     }
 
-    private boolean isFloatingPoint(Number n) {
+    private static boolean isFloatingPoint(Number n) {
         return n instanceof Double || n instanceof Float || n instanceof java.math.BigDecimal;
     }
 
-    private boolean vectorEqualsWithTolerance(Vector v1, Vector v2, float tolerance) {
+    private static boolean vectorEqualsWithTolerance(Vector v1, Vector v2, float tolerance) {
         if (v1 == null || v2 == null || v1.getDimensions() != v2.getDimensions()) return false;
         float[] data1 = v1.getData();
         float[] data2 = v2.getData();
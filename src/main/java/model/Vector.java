@@ -1,9 +1,12 @@
 package model;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.StringJoiner; // Import the StringJoiner class
 
-public class Vector {
+public class Vector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final float[] data;
 
@@ -0,0 +1,337 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.ASTNode;
+import ast.ExpressionNode;
+import ast.FilterNode;
+import ast.LimitableQuery;
+import ast.OrderableQuery;
+import ast.QueryNode;
+import ast.enums.SortOrder;
+import ast.nodes.*;
+import model.Table;
+import model.Vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates complete queries in order of increasing cost under a {@link CostModel}, instead of the
+ * depth-by-depth order of {@link TopDownEnumerator}. Without observational equivalence, both produce the
+ * same queries up to a depth, over the same filters, sort keys and LIMIT values.
+ *
+ * <p>In this grammar every sub-query is itself a complete query, so the search grows queries from the
+ * table outwards: a query is extended by a selection, an ORDER BY or a LIMIT around it. Since costs are
+ * additive and non-negative, an extension never costs less than the query it extends, and taking the
+ * cheapest query from a priority queue yields queries in order of cost. Each kind of extension is
+ * sorted by cost once; a query only queues its cheapest extension of each kind, and each extension
+ * taken from the queue queues the next one of its kind, so the queue stays small.
+ *
+ * <p>A query is extended as soon as it is taken from the queue, but reported as a candidate only once
+ * its {@link CostModel#stopCost stop cost} is paid, so e.g. a likely LIMIT can come before its source.
+ *
+ * <p>With observational equivalence, a sub-query whose result on the inputs was already produced by a
+ * cheaper one is not reported. It is still extended if it is shallower than every query that produced
+ * that result, since a cheaper but deeper query has fewer extensions within the maximum depth. So every
+ * result reachable within the maximum depth is reached, though not always by the same query as in
+ * {@link TopDownEnumerator}, which keeps the shallowest one.
+ */
+public class BestFirstEnumerator {
+
+    private enum Kind { SELECT, ORDER_BY, LIMIT }
+
+    // How a query's result on the inputs compares with those of the queries taken before it.
+    private enum Novelty { NEW, SHALLOWER_DUPLICATE, DUPLICATE }
+
+    // One way to extend a query, with the cost and depth it adds.
+    private record Extension(UnaryOperator<QueryNode> wrap, double cost, int depth) {}
+
+    // A query that passed pruning, and may be extended.
+    private record State(QueryNode query, double cost, int depth) {}
+
+    // A queued query: the extension at position option of a kind, applied to parent. The table has no
+    // parent; an entry without a kind reports its parent once its stop cost is paid.
+    private record Entry(double cost, long sequence, State parent, Kind kind, int option) {}
+
+    private static final Comparator<Entry> CHEAPEST_FIRST =
+            Comparator.comparingDouble(Entry::cost).thenComparingLong(Entry::sequence);
+
+    private final TableNode table;
+    private final double tableCost;
+    private final Map<Kind, List<Extension>> extensions;
+    private final List<Table> inputTables;
+    private final boolean observationalEquivalence;
+    private final boolean orderSensitive;
+    private final int maxDepth;
+    private final CostModel costModel;
+    private final BooleanSupplier stopRequested;
+
+    /**
+     * @param costModel The cost model ranking the queries.
+     * @param observationalEquivalence If true, filters and sub-queries producing an already seen result on
+     *                                 the inputs are pruned, as in {@link TopDownEnumerator}.
+     * @param orderSensitive If false, an ORDER BY is only generated where a LIMIT follows it.
+     * @param maxDepth The maximum depth of the generated queries, as counted by {@link TopDownEnumerator}.
+     */
+    public BestFirstEnumerator(List<Table> inputTables, List<Vector> queryVectors, CostModel costModel,
+                               boolean observationalEquivalence, boolean orderSensitive, int maxDepth) {
+        this(new TopDownEnumerator(inputTables, queryVectors, observationalEquivalence, orderSensitive),
+                inputTables, costModel, observationalEquivalence, orderSensitive, maxDepth, () -> false);
+    }
+
+    /**
+     * Enumerates the candidates for an example, ordered if the expected output is, without the filters
+     * that drop a row the output needs (see {@link TopDownEnumerator#TopDownEnumerator(List, List, boolean, Table)}).
+     */
+    public BestFirstEnumerator(List<Table> inputTables, List<Vector> queryVectors, CostModel costModel,
+                               boolean observationalEquivalence, Table expectedOutput, int maxDepth) {
+        this(inputTables, queryVectors, costModel, observationalEquivalence, expectedOutput, true, maxDepth,
+                () -> false);
+    }
+
+    /**
+     * Like {@link #BestFirstEnumerator(List, List, CostModel, boolean, Table, int)}, but with superset pruning
+     * as chosen (see {@link TopDownEnumerator#TopDownEnumerator(List, List, boolean, Table, boolean)}), and
+     * polling {@code stopRequested} while building the grammar and while taking queries from the queue. Throws
+     * {@link CancellationException} once it returns true, even where many queued queries are pruned in a row.
+     */
+    BestFirstEnumerator(List<Table> inputTables, List<Vector> queryVectors, CostModel costModel,
+                        boolean observationalEquivalence, Table expectedOutput, boolean supersetPruning,
+                        int maxDepth, BooleanSupplier stopRequested) {
+        this(stoppable(new TopDownEnumerator(inputTables, queryVectors, observationalEquivalence, expectedOutput,
+                                supersetPruning), stopRequested),
+                inputTables, costModel, observationalEquivalence, expectedOutput.isOrdered(), maxDepth, stopRequested);
+    }
+
+    private BestFirstEnumerator(TopDownEnumerator grammar, List<Table> inputTables, CostModel costModel,
+                                boolean observationalEquivalence, boolean orderSensitive, int maxDepth,
+                                BooleanSupplier stopRequested) {
+        this.inputTables = inputTables;
+        this.stopRequested = stopRequested;
+        this.costModel = costModel;
+        this.observationalEquivalence = observationalEquivalence;
+        this.orderSensitive = orderSensitive;
+        this.maxDepth = maxDepth;
+        this.table = grammar.table();
+        this.tableCost = nodeCost(table);
+
+        // The cost of a query node does not depend on its source, so the table stands in for it.
+        this.extensions = new EnumMap<>(Kind.class);
+        List<Extension> selections = new ArrayList<>();
+        for (int depth = 1; depth < maxDepth; depth++) {
+            for (FilterNode filter : grammar.filters(depth)) {
+                double cost = nodeCost(new SelectNode(table, filter)) + subtreeCost(filter);
+                selections.add(new Extension(source -> new SelectNode((OrderableQuery) source, filter), cost, depth));
+            }
+        }
+        List<Extension> orderings = new ArrayList<>();
+        for (ExpressionNode sortKey : grammar.sortKeys()) {
+            for (SortOrder order : grammar.sortOrders()) {
+                double cost = nodeCost(new OrderByNode(table, sortKey, order)) + subtreeCost(sortKey);
+                orderings.add(new Extension(source -> new OrderByNode((OrderableQuery) source, sortKey, order), cost, 0));
+            }
+        }
+        List<Extension> limits = new ArrayList<>();
+        for (int value : grammar.limitValues()) {
+            limits.add(new Extension(source -> new LimitNode((LimitableQuery) source, value), nodeCost(new LimitNode(table, value)), 0));
+        }
+        extensions.put(Kind.SELECT, sortedByCost(selections));
+        extensions.put(Kind.ORDER_BY, sortedByCost(orderings));
+        extensions.put(Kind.LIMIT, sortedByCost(limits));
+    }
+
+    /**
+     * Lazily enumerates all queries up to the maximum depth, cheapest first. Queries of equal cost come
+     * in the order they were queued. Every call starts a new search.
+     */
+    public Stream<QueryNode> stream() {
+        Iterator<QueryNode> search = new Search();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(search, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private final class Search implements Iterator<QueryNode> {
+
+        private final PriorityQueue<Entry> queue = new PriorityQueue<>(CHEAPEST_FIRST);
+        private final ASTEvaluator evaluator = observationalEquivalence ? new ASTEvaluator(inputTables) : null;
+        // The smallest depth at which each result was produced, by unordered sub-queries and by ORDER BYs.
+        private final Map<List<List<Object>>, Integer> seenResults = new HashMap<>();
+        private final Map<List<List<Object>>, Integer> seenOrderedResults = new HashMap<>();
+        private long sequence;
+        private QueryNode next;
+
+        Search() {
+            queue.add(new Entry(tableCost, sequence++, null, null, 0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !queue.isEmpty()) {
+                if (stopRequested.getAsBoolean()) {
+                    throw new CancellationException("Best-first search stopped.");
+                }
+                next = advance(queue.poll());
+            }
+            return next != null;
+        }
+
+        @Override
+        public QueryNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            QueryNode query = next;
+            next = null;
+            return query;
+        }
+
+        /**
+         * Builds the query of an entry, queues its successors, and returns it if it is a candidate.
+         * @return The query, or null if it was pruned or is only a building block.
+         */
+        private QueryNode advance(Entry entry) {
+            State state;
+            if (entry.kind() == null && entry.parent() != null) {
+                return entry.parent().query();
+            } else if (entry.parent() == null) {
+                state = new State(table, entry.cost(), 0);
+            } else {
+                List<Extension> options = extensions.get(entry.kind());
+                State parent = entry.parent();
+                if (entry.option() + 1 < options.size()) {
+                    queue.add(new Entry(parent.cost() + options.get(entry.option() + 1).cost(), sequence++,
+                            parent, entry.kind(), entry.option() + 1));
+                }
+                Extension extension = options.get(entry.option());
+                state = new State(extension.wrap().apply(parent.query()), entry.cost(),
+                        1 + Math.max(parent.depth(), extension.depth()));
+            }
+
+            QueryNode query = state.query();
+            Novelty novelty = novelty(state);
+            if (novelty == Novelty.DUPLICATE) {
+                return null;
+            }
+            if (state.depth() < maxDepth) {
+                if (query instanceof OrderableQuery) {
+                    queueFirst(state, Kind.SELECT);
+                    queueFirst(state, Kind.ORDER_BY);
+                    queueFirst(state, Kind.LIMIT);
+                } else if (query instanceof OrderByNode) {
+                    queueFirst(state, Kind.LIMIT);
+                }
+            }
+            if (novelty == Novelty.SHALLOWER_DUPLICATE) {
+                // Its result was already reported; it is only kept for its extensions.
+                return null;
+            }
+            // Without a LIMIT, an ORDER BY only permutes rows, which a multiset comparison cannot observe.
+            if (query instanceof OrderByNode && !orderSensitive) {
+                return null;
+            }
+            double stopCost = checkedCost(costModel.stopCost(query), query);
+            if (stopCost > 0) {
+                queue.add(new Entry(state.cost() + stopCost, sequence++, state, null, 0));
+                return null;
+            }
+            return query;
+        }
+
+        private void queueFirst(State state, Kind kind) {
+            List<Extension> options = extensions.get(kind);
+            if (!options.isEmpty()) {
+                queue.add(new Entry(state.cost() + options.get(0).cost(), sequence++, state, kind, 0));
+            }
+        }
+
+        /**
+         * Observational equivalence check. LIMITs are never extended, so they are not pruned.
+         * An ORDER BY is a duplicate of an unordered sub-query with the same rows in the same order,
+         * but not the other way around: an ORDER BY cannot stand in for a selection's source.
+         */
+        private Novelty novelty(State state) {
+            QueryNode query = state.query();
+            if (evaluator == null || query instanceof LimitNode) {
+                return Novelty.NEW;
+            }
+            List<List<Object>> rows;
+            try {
+                rows = evaluator.evaluate(query).getRows();
+            } catch (UnsupportedOperationException e) {
+                return Novelty.NEW;
+            } catch (RuntimeException e) {
+                // Ill-typed on the inputs, and so is every extension of it.
+                return Novelty.DUPLICATE;
+            }
+            Integer seenDepth = seenResults.get(rows);
+            Map<List<List<Object>>, Integer> seen = seenResults;
+            if (query instanceof OrderByNode) {
+                Integer orderedDepth = seenOrderedResults.get(rows);
+                if (seenDepth == null || (orderedDepth != null && orderedDepth < seenDepth)) {
+                    seenDepth = orderedDepth;
+                }
+                seen = seenOrderedResults;
+            }
+            if (seenDepth != null && seenDepth <= state.depth()) {
+                return Novelty.DUPLICATE;
+            }
+            seen.put(rows, state.depth());
+            return seenDepth == null ? Novelty.NEW : Novelty.SHALLOWER_DUPLICATE;
+        }
+    }
+
+    private static TopDownEnumerator stoppable(TopDownEnumerator grammar, BooleanSupplier stopRequested) {
+        grammar.setStopRequested(stopRequested);
+        return grammar;
+    }
+
+    private static List<Extension> sortedByCost(List<Extension> extensions) {
+        extensions.sort(Comparator.comparingDouble(Extension::cost));
+        return extensions;
+    }
+
+    /**
+     * @return The cost of a filter or expression and everything below it.
+     */
+    private double subtreeCost(ASTNode node) {
+        double cost = nodeCost(node);
+        if (node instanceof PredicateNode) {
+            cost += subtreeCost(((PredicateNode) node).getLeft()) + subtreeCost(((PredicateNode) node).getRight());
+        } else if (node instanceof DistanceExpressionNode) {
+            cost += subtreeCost(((DistanceExpressionNode) node).getLeft()) + subtreeCost(((DistanceExpressionNode) node).getRight());
+        } else if (node instanceof AndFilterNode) {
+            cost += subtreeCost(((AndFilterNode) node).getLeft()) + subtreeCost(((AndFilterNode) node).getRight());
+        } else if (node instanceof OrFilterNode) {
+            cost += subtreeCost(((OrFilterNode) node).getLeft()) + subtreeCost(((OrFilterNode) node).getRight());
+        } else if (node instanceof NotFilterNode) {
+            cost += subtreeCost(((NotFilterNode) node).getChild());
+        } else if (node instanceof IsNullPredicateNode) {
+            cost += subtreeCost(((IsNullPredicateNode) node).getExpression());
+        }
+        return cost;
+    }
+
+    private double nodeCost(ASTNode node) {
+        return checkedCost(costModel.nodeCost(node), node);
+    }
+
+    private static double checkedCost(double cost, ASTNode node) {
+        if (!(cost >= 0)) {
+            throw new IllegalStateException("Cost model returned " + cost + " for " + node + "; costs must be non-negative.");
+        }
+        return cost;
+    }
+}
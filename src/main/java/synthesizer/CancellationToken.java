@@ -0,0 +1,61 @@
+package synthesizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets another thread stop a running synthesis, see
+ * {@link Synthesizer#synthesize(List, model.Table, List, java.time.Instant, CancellationToken)}.
+ * Cancelling is permanent. Thread-safe.
+ */
+public final class CancellationToken {
+
+    private final List<Runnable> listeners = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the token and runs the registered listeners on the calling thread. Does nothing if the
+     * token is already cancelled.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (Runnable listener : toRun) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("Cancellation listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers an action to run when the token is cancelled. If it already is, the action runs right away.
+     * @return An action that unregisters the listener again.
+     */
+    public Runnable onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return () -> {
+                    synchronized (this) {
+                        listeners.remove(listener);
+                    }
+                };
+            }
+        }
+        listener.run();
+        return () -> {};
+    }
+}
@@ -0,0 +1,297 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.ASTTranslator;
+import ast.QueryNode;
+import ast.nodes.AliasedExpression;
+import ast.nodes.ColumnReferenceNode;
+import ast.nodes.ProjectionNode;
+import database.QueryExecutor;
+import database.QueryExecutor.QueryOutcome;
+import database.ResultCache;
+import model.ParameterizedQuery;
+import model.Table;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a complete candidate query produces the expected output table.
+ *
+ * <p>Candidates are first checked in-process with an {@link ASTEvaluator} (if one is given);
+ * only local matches and candidates the evaluator cannot decide are executed on the database.
+ * Instances hold no mutable state other than an optional, thread-safe {@link ClosestMatches} and
+ * {@link ResultCache} and a count of {@linkplain #getInconclusiveCount() inconclusive} candidates,
+ * so one instance can be shared by several worker threads as long as each passes
+ * its own {@link QueryExecutor}.
+ */
+public class CandidateEvaluator {
+
+    private final ASTTranslator sqlTranslator;
+    private final ASTEvaluator evaluator;
+    private final Table outputTable;
+    private final boolean serverSideComparison;
+    private final ClosestMatches closestMatches;
+    private final ResultCache resultCache;
+    private final AtomicLong inconclusive = new AtomicLong();
+
+    /**
+     * @param evaluator The in-process evaluator, or null to send every candidate to the database.
+     * @param outputTable The expected output table.
+     */
+    public CandidateEvaluator(ASTEvaluator evaluator, Table outputTable) {
+        this(evaluator, outputTable, false);
+    }
+
+    /**
+     * @param evaluator The in-process evaluator, or null to send every candidate to the database.
+     * @param outputTable The expected output table.
+     * @param serverSideComparison If true, candidates are compared with the expected output inside the
+     *                             database ({@link QueryExecutor#matchesExpected}) instead of fetching their rows.
+     */
+    public CandidateEvaluator(ASTEvaluator evaluator, Table outputTable, boolean serverSideComparison) {
+        this(evaluator, outputTable, serverSideComparison, null, null);
+    }
+
+    /**
+     * @param closestMatches Receives the result of every candidate whose rows are computed but do not
+     *                       match, or null. Database results with more rows than expected are not fetched,
+     *                       and therefore not ranked.
+     * @param resultCache Database results of earlier candidates, or null to execute every candidate.
+     *                    Results compared inside the database are not cached, and neither are failures
+     *                    that may not repeat ({@link QueryOutcome#isDeterministicFailure()}) or that
+     *                    happened after the executor was stopped.
+     */
+    CandidateEvaluator(ASTEvaluator evaluator, Table outputTable, boolean serverSideComparison,
+                       ClosestMatches closestMatches, ResultCache resultCache) {
+        this.closestMatches = closestMatches;
+        this.resultCache = resultCache;
+        this.sqlTranslator = new ASTTranslator();
+        this.evaluator = evaluator;
+        this.outputTable = outputTable;
+        this.serverSideComparison = serverSideComparison;
+    }
+
+    /**
+     * Checks a candidate against the expected output.
+     * @param candidate The complete candidate query (including the final projection).
+     * @param queryExecutor The executor used for database confirmation.
+     * @return true if the database result equals the expected output table.
+     */
+    public boolean isSolution(QueryNode candidate, QueryExecutor queryExecutor) {
+        return findSolutions(List.of(candidate), queryExecutor)[0];
+    }
+
+    /**
+     * Checks several candidates, sending all of those that need the database in one batch
+     * (see {@link QueryExecutor#executeBatch(List)}).
+     * @param candidates The complete candidate queries.
+     * @param queryExecutor The executor used for database confirmation.
+     * @return For each candidate, in order, whether it produces the expected output table.
+     */
+    public boolean[] findSolutions(List<QueryNode> candidates, QueryExecutor queryExecutor) {
+        boolean[] matched = new boolean[candidates.size()];
+        List<Integer> pendingIndices = new ArrayList<>();
+        List<ParameterizedQuery> pendingQueries = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            QueryNode candidate = candidates.get(i);
+            if (evaluator != null && !matchesLocally(candidate)) {
+                continue;
+            }
+            try {
+                // Constants are bound as parameters so candidates of the same shape share one prepared statement.
+                pendingQueries.add(sqlTranslator.translateParameterized(candidate));
+                pendingIndices.add(i);
+            } catch (UnsupportedOperationException e) {
+                // This can happen if the translator doesn't support a node type yet.
+            }
+        }
+        if (pendingQueries.isEmpty()) {
+            return matched;
+        }
+
+        boolean[] confirmed;
+        try {
+            confirmed = confirm(candidates, pendingIndices, pendingQueries, queryExecutor);
+        } catch (RuntimeException e) {
+            // The connection itself failed; no candidate of this batch can be confirmed.
+            inconclusive.addAndGet(pendingQueries.size());
+            return matched;
+        }
+        for (int i = 0; i < confirmed.length; i++) {
+            if (confirmed[i]) {
+                QueryNode candidate = candidates.get(pendingIndices.get(i));
+                System.out.println("SUCCESS: Found a matching query!");
+                System.out.println("SQL: " + sqlTranslator.translate(candidate));
+                matched[pendingIndices.get(i)] = true;
+            }
+        }
+        return matched;
+    }
+
+    private boolean[] confirm(List<QueryNode> candidates, List<Integer> pendingIndices,
+                              List<ParameterizedQuery> pendingQueries, QueryExecutor queryExecutor) {
+        if (serverSideComparison) {
+            try {
+                return compareOnServer(candidates, pendingIndices, pendingQueries, queryExecutor);
+            } catch (UnsupportedOperationException e) {
+                // The comparison cannot be expressed in the database; compare in Java instead.
+            }
+        }
+
+        boolean[] confirmed = new boolean[pendingQueries.size()];
+        List<Integer> uncached = new ArrayList<>();
+        List<ParameterizedQuery> uncachedQueries = new ArrayList<>();
+        for (int i = 0; i < pendingQueries.size(); i++) {
+            Optional<Table> cached = resultCache == null ? null : resultCache.get(pendingQueries.get(i));
+            if (cached == null) {
+                uncached.add(i);
+                uncachedQueries.add(pendingQueries.get(i));
+            } else {
+                // The result was already ranked when it was first computed.
+                confirmed[i] = cached.map(outputTable::equals).orElse(false);
+            }
+        }
+        if (uncachedQueries.isEmpty()) {
+            return confirmed;
+        }
+
+        List<QueryOutcome> outcomes = execute(uncachedQueries, queryExecutor);
+        for (int i = 0; i < outcomes.size(); i++) {
+            QueryOutcome outcome = outcomes.get(i);
+            countIfInconclusive(outcome);
+            if (resultCache != null && (outcome.result().isPresent()
+                    || (outcome.isDeterministicFailure() && !queryExecutor.isStopped()))) {
+                resultCache.put(uncachedQueries.get(i), outcome.result());
+            }
+            QueryNode candidate = candidates.get(pendingIndices.get(uncached.get(i)));
+            confirmed[uncached.get(i)] = outcome.result().map(result -> matches(candidate, result)).orElse(false);
+        }
+        return confirmed;
+    }
+
+    /**
+     * @return For each query, in order, its outcome; a failure if it returned more rows than expected.
+     */
+    private List<QueryOutcome> execute(List<ParameterizedQuery> queries, QueryExecutor queryExecutor) {
+        // A candidate returning more rows than expected cannot match, so the rest of its rows are not fetched.
+        int maxRows = outputTable.getRowCount();
+        if (queries.size() == 1) {
+            try {
+                return List.of(new QueryOutcome(Optional.of(queryExecutor.executeQuery(queries.get(0), maxRows)), null));
+            } catch (RuntimeException e) {
+                // This catches SQL execution errors from the database.
+                // This is expected for semantically incorrect queries.
+                String sqlState = e.getCause() instanceof SQLException ? ((SQLException) e.getCause()).getSQLState() : null;
+                return List.of(QueryOutcome.failed(sqlState));
+            }
+        }
+        return queryExecutor.executeBatchOutcomes(queries, maxRows);
+    }
+
+    /**
+     * Server-side comparison aligns columns by name, so candidates whose projected column names differ
+     * from the expected ones are rejected up front, as {@link Table#equals} would reject them.
+     */
+    private boolean[] compareOnServer(List<QueryNode> candidates, List<Integer> pendingIndices,
+                                      List<ParameterizedQuery> pendingQueries, QueryExecutor queryExecutor) {
+        if (outputTable.isOrdered()) {
+            throw new UnsupportedOperationException("EXCEPT ALL cannot compare row order.");
+        }
+        Set<String> expectedColumns = new HashSet<>(outputTable.getColumnNames());
+        List<Integer> comparable = new ArrayList<>();
+        List<ParameterizedQuery> comparableQueries = new ArrayList<>();
+        for (int i = 0; i < pendingQueries.size(); i++) {
+            List<String> columns = outputColumnNames(candidates.get(pendingIndices.get(i)));
+            if (columns.size() == expectedColumns.size() && new HashSet<>(columns).equals(expectedColumns)) {
+                comparable.add(i);
+                comparableQueries.add(pendingQueries.get(i));
+            }
+        }
+
+        boolean[] confirmed = new boolean[pendingQueries.size()];
+        if (comparableQueries.isEmpty()) {
+            return confirmed;
+        }
+        List<QueryOutcome> outcomes = queryExecutor.matchesExpectedOutcomes(comparableQueries, outputTable);
+        for (int i = 0; i < outcomes.size(); i++) {
+            countIfInconclusive(outcomes.get(i));
+            confirmed[comparable.get(i)] = outcomes.get(i).result()
+                    .map(result -> Boolean.TRUE.equals(result.getRows().get(0).get(0)))
+                    .orElse(false);
+        }
+        return confirmed;
+    }
+
+    /**
+     * @return The number of candidates sent to the database that could not be decided, because the
+     *         connection failed or their query failed in a way that may not repeat
+     *         ({@link QueryOutcome#isDeterministicFailure()}). They were reported as not matching, so
+     *         the solutions found may be incomplete if this is not zero.
+     */
+    public long getInconclusiveCount() {
+        return inconclusive.get();
+    }
+
+    private void countIfInconclusive(QueryOutcome outcome) {
+        if (outcome.result().isEmpty() && !outcome.isDeterministicFailure()) {
+            inconclusive.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The names of the columns a candidate produces.
+     * @throws UnsupportedOperationException if they cannot be determined without running the query.
+     */
+    private List<String> outputColumnNames(QueryNode candidate) {
+        if (!(candidate instanceof ProjectionNode)) {
+            throw new UnsupportedOperationException("Candidate output columns are not known statically.");
+        }
+        List<String> names = new ArrayList<>();
+        for (AliasedExpression aliasedExpr : ((ProjectionNode) candidate).getSelectList()) {
+            if (aliasedExpr.hasAlias()) {
+                names.add(aliasedExpr.alias());
+            } else if (aliasedExpr.expression() instanceof ColumnReferenceNode) {
+                names.add(((ColumnReferenceNode) aliasedExpr.expression()).getColumnName());
+            } else {
+                throw new UnsupportedOperationException("Candidate output columns are not known statically.");
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Pre-checks a candidate in-process so only local matches reach the database.
+     * @return false if the candidate certainly does not produce the output table;
+     *         true if it matches locally or the evaluator cannot decide it.
+     */
+    private boolean matchesLocally(QueryNode candidate) {
+        try {
+            return matches(candidate, evaluator.evaluate(candidate));
+        } catch (UnsupportedOperationException e) {
+            // Not decidable in-process; let the database evaluate it.
+            return true;
+        } catch (RuntimeException e) {
+            // The database would reject this candidate as well.
+            return false;
+        }
+    }
+
+    /**
+     * @return true if {@code result} is the expected output; otherwise it is scored as a partial match.
+     */
+    private boolean matches(QueryNode candidate, Table result) {
+        if (result.equals(outputTable)) {
+            return true;
+        }
+        if (closestMatches != null) {
+            closestMatches.offer(candidate, result);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+package synthesizer;
+
+import ast.QueryNode;
+import model.Table;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the candidates whose results share the most rows with the expected output. Ties keep the
+ * candidate seen first. Thread-safe, so worker threads can share one instance.
+ */
+final class ClosestMatches {
+
+    private record Scored(SynthesisResult.PartialMatch match, long sequence) {}
+
+    // The worst kept match is at the head.
+    private static final Comparator<Scored> WORST_FIRST = Comparator
+            .comparingDouble((Scored scored) -> scored.match().rowOverlap())
+            .thenComparing(Comparator.comparingLong(Scored::sequence).reversed());
+
+    private final Table outputTable;
+    private final int capacity;
+    private final PriorityQueue<Scored> kept = new PriorityQueue<>(WORST_FIRST);
+    private long sequence;
+    // The overlap a candidate must exceed to be kept, readable without locking.
+    private volatile double threshold;
+
+    ClosestMatches(Table outputTable, int capacity) {
+        this.outputTable = outputTable;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Scores a candidate's result against the expected output and keeps it if it is among the closest.
+     * Results whose row count alone rules them out are not compared row by row.
+     */
+    void offer(QueryNode candidate, Table result) {
+        int larger = Math.max(result.getRowCount(), outputTable.getRowCount());
+        if (capacity == 0 || larger == 0) {
+            return;
+        }
+        double bound = (double) Math.min(result.getRowCount(), outputTable.getRowCount()) / larger;
+        if (bound <= threshold) {
+            return;
+        }
+        double overlap = (double) result.countMatchingRows(outputTable) / larger;
+        if (overlap <= threshold) {
+            return;
+        }
+        synchronized (this) {
+            kept.add(new Scored(new SynthesisResult.PartialMatch(candidate, overlap), sequence++));
+            if (kept.size() > capacity) {
+                kept.poll();
+            }
+            if (kept.size() == capacity) {
+                threshold = kept.peek().match().rowOverlap();
+            }
+        }
+    }
+
+    /**
+     * @return The kept matches, closest first.
+     */
+    synchronized List<SynthesisResult.PartialMatch> get() {
+        List<Scored> sorted = new ArrayList<>(kept);
+        sorted.sort(WORST_FIRST.reversed());
+        List<SynthesisResult.PartialMatch> matches = new ArrayList<>(sorted.size());
+        for (Scored scored : sorted) {
+            matches.add(scored.match());
+        }
+        return matches;
+    }
+}
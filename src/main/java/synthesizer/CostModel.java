@@ -0,0 +1,30 @@
+package synthesizer;
+
+import ast.ASTNode;
+import ast.QueryNode;
+
+/**
+ * Ranks candidate queries for {@link BestFirstEnumerator}: cheaper queries are evaluated first.
+ *
+ * <p>The cost of a query is the sum of {@link #nodeCost} over all of its nodes, so it grows with
+ * every node added. A node's cost may depend on its children, e.g. to penalize comparing a column
+ * with a value it never takes, but the cost of a query node (selection, ordering, limit) must not
+ * depend on its source sub-query.
+ *
+ * <p>A query that is reported as a candidate can additionally be charged a {@link #stopCost}, for the
+ * choices it implies by not being extended (no LIMIT, say). It delays the report, not its extensions.
+ */
+public interface CostModel {
+
+    /**
+     * @return The non-negative cost of the node itself, without the costs of its children.
+     */
+    double nodeCost(ASTNode node);
+
+    /**
+     * @return The non-negative cost of using {@code query} as the complete query instead of extending it.
+     */
+    default double stopCost(QueryNode query) {
+        return 0.0;
+    }
+}
@@ -0,0 +1,107 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.FilterNode;
+import ast.nodes.AndFilterNode;
+import ast.nodes.NotFilterNode;
+import ast.nodes.OrFilterNode;
+import model.Table;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rows of a table a filter keeps, as a bitmap over row positions, computed once per filter.
+ *
+ * <p>Predicates are evaluated row by row in-process; AND, OR and NOT are combined from the bitmaps of
+ * their children with word-wise operations. To follow SQL three-valued logic, the rows where a filter is
+ * FALSE are tracked as well: a row in neither bitmap is UNKNOWN, which NOT keeps UNKNOWN.
+ * Filters are looked up structurally, so a filter rebuilt from the same parts is not evaluated again.
+ */
+final class FilterBitmaps {
+
+    private record RowSet(BitSet trueRows, BitSet falseRows) {}
+
+    private final ASTEvaluator evaluator;
+    private final Table table;
+    private final Map<FilterNode, RowSet> rowSets = new HashMap<>();
+
+    FilterBitmaps(ASTEvaluator evaluator, Table table) {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /**
+     * @return The positions of the rows for which the filter is TRUE. Do not modify it.
+     * @throws UnsupportedOperationException if a predicate cannot be evaluated in-process.
+     * @throws RuntimeException if the filter is ill-typed on the table.
+     */
+    BitSet rows(FilterNode filter) {
+        return rowSet(filter).trueRows();
+    }
+
+    /**
+     * @return A new bitmap with the positions of all rows of the table.
+     */
+    BitSet allRows() {
+        BitSet all = new BitSet(table.getRowCount());
+        all.set(0, table.getRowCount());
+        return all;
+    }
+
+    private RowSet rowSet(FilterNode filter) {
+        RowSet rowSet = rowSets.get(filter);
+        if (rowSet == null) {
+            rowSet = compute(filter);
+            rowSets.put(filter, rowSet);
+        }
+        return rowSet;
+    }
+
+    private RowSet compute(FilterNode filter) {
+        if (filter instanceof AndFilterNode) {
+            AndFilterNode and = (AndFilterNode) filter;
+            RowSet left = rowSet(and.getLeft());
+            RowSet right = rowSet(and.getRight());
+            return new RowSet(combine(left.trueRows(), right.trueRows(), true),
+                    combine(left.falseRows(), right.falseRows(), false));
+        }
+        if (filter instanceof OrFilterNode) {
+            OrFilterNode or = (OrFilterNode) filter;
+            RowSet left = rowSet(or.getLeft());
+            RowSet right = rowSet(or.getRight());
+            return new RowSet(combine(left.trueRows(), right.trueRows(), false),
+                    combine(left.falseRows(), right.falseRows(), true));
+        }
+        if (filter instanceof NotFilterNode) {
+            RowSet child = rowSet(((NotFilterNode) filter).getChild());
+            return new RowSet(child.falseRows(), child.trueRows());
+        }
+
+        Boolean[] results = evaluator.evaluateFilter(filter, table);
+        BitSet trueRows = new BitSet(results.length);
+        BitSet falseRows = new BitSet(results.length);
+        for (int i = 0; i < results.length; i++) {
+            if (Boolean.TRUE.equals(results[i])) {
+                trueRows.set(i);
+            } else if (Boolean.FALSE.equals(results[i])) {
+                falseRows.set(i);
+            }
+        }
+        return new RowSet(trueRows, falseRows);
+    }
+
+    /**
+     * @return A new bitmap with the intersection ({@code and}) or the union of two bitmaps.
+     */
+    private static BitSet combine(BitSet left, BitSet right, boolean and) {
+        BitSet result = (BitSet) left.clone();
+        if (and) {
+            result.and(right);
+        } else {
+            result.or(right);
+        }
+        return result;
+    }
+}
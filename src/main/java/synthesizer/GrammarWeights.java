@@ -0,0 +1,402 @@
+package synthesizer;
+
+import ast.ASTNode;
+import ast.QueryNode;
+import ast.enums.DistanceOperator;
+import ast.enums.PredicateOperator;
+import ast.enums.SortOrder;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.LimitNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.SelectNode;
+import ast.nodes.TableNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Production and operator probabilities of the enumerated grammar, estimated from past solutions.
+ * As a {@link CostModel}, every choice costs its negative log-probability, so {@link BestFirstEnumerator}
+ * produces queries in order of decreasing probability.
+ *
+ * <p>The grammar is the one of {@link TopDownEnumerator}. Its choices are: whether a query has a LIMIT,
+ * whether it has an ORDER BY, whether each sub-query is one more selection or the table, the operator
+ * of each predicate and distance, whether a query is sorted by a distance or a column, and the sort
+ * order. Which column or constant is used is not modelled; {@link HeuristicCostModel} adds penalties
+ * for those on top of these weights. Counts are smoothed by adding one to every alternative, so an
+ * empty corpus gives uniform weights.
+ *
+ * <p>The corpus is a JSON Lines file with one solved task per line: {@code {"sql": "SELECT ...", "count": 3}}.
+ * {@code count} is optional and defaults to 1. Queries must be in the SQL subset the synthesizer
+ * generates (selections joined by WHERE or AND, one ORDER BY key, LIMIT); other queries are skipped.
+ */
+public class GrammarWeights implements CostModel {
+
+    // The choices of the grammar. Binary choices take the production at index 0, e.g. "has a LIMIT".
+    private enum Choice {
+        LIMIT(2), ORDER_BY(2), SELECTION(2), SORT_KEY_IS_DISTANCE(2), SORT_ORDER(2),
+        PREDICATE_OPERATOR(PredicateOperator.values().length),
+        DISTANCE_OPERATOR(DistanceOperator.values().length);
+
+        private final int alternatives;
+
+        Choice(int alternatives) {
+            this.alternatives = alternatives;
+        }
+    }
+
+    private static final int YES = 0;
+    private static final int NO = 1;
+
+    private static final String[] OPERATORS = {"<->", "<=>", "<#>", "<+>", "<~>", "<%>", "<=", ">=", "!=", "<>", "=", "<", ">"};
+
+    private final Map<Choice, double[]> counts = new EnumMap<>(Choice.class);
+    private double observedCount;
+
+    /**
+     * Creates uniform weights; see {@link #observe} and {@link #train}.
+     */
+    public GrammarWeights() {
+        for (Choice choice : Choice.values()) {
+            counts.put(choice, new double[choice.alternatives]);
+        }
+    }
+
+    /**
+     * Estimates the weights from a JSON Lines corpus of solved tasks.
+     * @throws IOException if the file cannot be read or a line is not a JSON object with an "sql" string.
+     */
+    public static GrammarWeights train(Path corpus) throws IOException {
+        GrammarWeights weights = new GrammarWeights();
+        int lineNumber = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Object sql;
+                Object count;
+                try {
+                    Map<String, Object> task = Json.parseObject(line);
+                    sql = task.get("sql");
+                    count = task.getOrDefault("count", 1.0);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + lineNumber + " of " + corpus + " is not valid JSON: " + e.getMessage(), e);
+                }
+                if (!(sql instanceof String) || !(count instanceof Double) || (Double) count < 0) {
+                    throw new IOException("Line " + lineNumber + " of " + corpus + " needs an \"sql\" string and a non-negative \"count\".");
+                }
+                if (!weights.observe((String) sql, (Double) count)) {
+                    skipped++;
+                }
+            }
+        }
+        System.out.println("Trained grammar weights on " + weights.observedCount + " solutions from " + corpus
+                + " (" + skipped + " skipped).");
+        return weights;
+    }
+
+    /**
+     * Counts the choices made by a solution.
+     * @param sql A query as produced by {@link ast.ASTTranslator}, with literals or {@code ?} placeholders.
+     * @param count How many times the query was a solution.
+     * @return false if the query is outside of the enumerated grammar, in which case nothing is counted.
+     */
+    public boolean observe(String sql, double count) {
+        Observation observation = Observation.parse(sql);
+        if (observation == null) {
+            return false;
+        }
+        add(Choice.LIMIT, observation.limit ? YES : NO, count);
+        add(Choice.ORDER_BY, observation.orderBy ? YES : NO, count);
+        add(Choice.SELECTION, YES, count * observation.predicateOperators.size());
+        add(Choice.SELECTION, NO, count);
+        for (PredicateOperator operator : observation.predicateOperators) {
+            add(Choice.PREDICATE_OPERATOR, operator.ordinal(), count);
+        }
+        for (DistanceOperator operator : observation.distanceOperators) {
+            add(Choice.DISTANCE_OPERATOR, operator.ordinal(), count);
+        }
+        if (observation.orderBy) {
+            add(Choice.SORT_KEY_IS_DISTANCE, observation.sortByDistance ? YES : NO, count);
+            add(Choice.SORT_ORDER, observation.sortOrder == SortOrder.DESC ? 1 : 0, count);
+        }
+        observedCount += count;
+        return true;
+    }
+
+    /**
+     * @return The total count of the solutions observed so far.
+     */
+    public double getObservedCount() {
+        return observedCount;
+    }
+
+    @Override
+    public double nodeCost(ASTNode node) {
+        if (node instanceof TableNode) {
+            return cost(Choice.SELECTION, NO);
+        }
+        if (node instanceof SelectNode) {
+            return cost(Choice.SELECTION, YES);
+        }
+        if (node instanceof PredicateNode) {
+            return cost(Choice.PREDICATE_OPERATOR, ((PredicateNode) node).getOperator().ordinal());
+        }
+        if (node instanceof DistanceExpressionNode) {
+            return cost(Choice.DISTANCE_OPERATOR, ((DistanceExpressionNode) node).getOperator().ordinal());
+        }
+        if (node instanceof OrderByNode) {
+            OrderByNode orderBy = (OrderByNode) node;
+            boolean byDistance = orderBy.getSortExpression() instanceof DistanceExpressionNode;
+            return cost(Choice.ORDER_BY, YES)
+                    + cost(Choice.SORT_KEY_IS_DISTANCE, byDistance ? YES : NO)
+                    + cost(Choice.SORT_ORDER, orderBy.getSortOrder() == SortOrder.DESC ? 1 : 0);
+        }
+        if (node instanceof LimitNode) {
+            return cost(Choice.LIMIT, YES);
+        }
+        return 0.0;
+    }
+
+    /**
+     * Charges the productions not taken: no LIMIT, and no ORDER BY below where there is none.
+     */
+    @Override
+    public double stopCost(QueryNode query) {
+        double cost = 0.0;
+        QueryNode limitable = query;
+        if (query instanceof LimitNode) {
+            limitable = ((LimitNode) query).getSource();
+        } else {
+            cost += cost(Choice.LIMIT, NO);
+        }
+        if (!(limitable instanceof OrderByNode)) {
+            cost += cost(Choice.ORDER_BY, NO);
+        }
+        return cost;
+    }
+
+    private void add(Choice choice, int alternative, double count) {
+        counts.get(choice)[alternative] += count;
+    }
+
+    /**
+     * @return The negative log-probability of an alternative, with add-one smoothing.
+     */
+    private double cost(Choice choice, int alternative) {
+        double[] choiceCounts = counts.get(choice);
+        double total = 0;
+        for (double count : choiceCounts) {
+            total += count;
+        }
+        return -Math.log((choiceCounts[alternative] + 1) / (total + choiceCounts.length));
+    }
+
+    /**
+     * The choices read off one solution's SQL. Only the clause structure is recognized:
+     * {@code SELECT ... FROM table [WHERE p] [WHERE p | AND p]* [ORDER BY key [ASC|DESC]] [LIMIT n]}.
+     */
+    private static final class Observation {
+        private final List<PredicateOperator> predicateOperators = new ArrayList<>();
+        private final List<DistanceOperator> distanceOperators = new ArrayList<>();
+        private boolean orderBy;
+        private boolean sortByDistance;
+        private SortOrder sortOrder = SortOrder.ASC;
+        private boolean limit;
+
+        /**
+         * @return The observation, or null if the query is outside of the grammar.
+         */
+        static Observation parse(String sql) {
+            List<String> tokens = tokenize(sql);
+            if (!tokens.isEmpty() && tokens.get(tokens.size() - 1).equals(";")) {
+                tokens.remove(tokens.size() - 1);
+            }
+            int position = tokens.indexOf("FROM");
+            // The table name must be a plain identifier, not a sub-query.
+            if (position < 0 || position + 1 >= tokens.size() || !isIdentifier(tokens.get(position + 1))) {
+                return null;
+            }
+            position += 2;
+
+            Observation observation = new Observation();
+            while (position < tokens.size()) {
+                String keyword = tokens.get(position++);
+                int end = position;
+                while (end < tokens.size() && !isClauseKeyword(tokens, end)) {
+                    end++;
+                }
+                List<String> clause = tokens.subList(position, end);
+                boolean understood;
+                switch (keyword) {
+                    case "WHERE":
+                    case "AND":
+                        understood = observation.addPredicate(clause);
+                        break;
+                    case "ORDER":
+                        understood = !observation.orderBy && observation.addOrderBy(clause);
+                        break;
+                    case "LIMIT":
+                        understood = !observation.limit && clause.size() == 1;
+                        observation.limit = true;
+                        break;
+                    default:
+                        understood = false;
+                }
+                if (!understood) {
+                    return null;
+                }
+                position = end;
+            }
+            return observation;
+        }
+
+        private boolean addPredicate(List<String> clause) {
+            PredicateOperator comparison = null;
+            for (String token : clause) {
+                DistanceOperator distance = distanceOperator(token);
+                if (distance != null) {
+                    distanceOperators.add(distance);
+                    continue;
+                }
+                PredicateOperator operator = predicateOperator(token);
+                if (operator != null) {
+                    if (comparison != null) {
+                        return false;
+                    }
+                    comparison = operator;
+                } else if (!isOperand(token) && !token.equals("(") && !token.equals(")")) {
+                    return false; // OR, NOT, IS NULL, ...
+                }
+            }
+            if (comparison == null) {
+                return false;
+            }
+            predicateOperators.add(comparison);
+            return true;
+        }
+
+        private boolean addOrderBy(List<String> clause) {
+            if (clause.isEmpty() || !clause.get(0).equals("BY")) {
+                return false;
+            }
+            List<String> key = clause.subList(1, clause.size());
+            String last = key.isEmpty() ? "" : key.get(key.size() - 1);
+            if (last.equals("ASC") || last.equals("DESC")) {
+                sortOrder = SortOrder.valueOf(last);
+                key = key.subList(0, key.size() - 1);
+            }
+            if (key.size() == 1 && isIdentifier(key.get(0))) {
+                orderBy = true;
+                return true;
+            }
+            if (key.size() == 3 && isOperand(key.get(0)) && isOperand(key.get(2)) && distanceOperator(key.get(1)) != null) {
+                distanceOperators.add(distanceOperator(key.get(1)));
+                orderBy = true;
+                sortByDistance = true;
+                return true;
+            }
+            return false;
+        }
+
+        private static boolean isClauseKeyword(List<String> tokens, int index) {
+            String token = tokens.get(index);
+            return token.equals("WHERE") || token.equals("AND") || token.equals("LIMIT")
+                    || (token.equals("ORDER") && index + 1 < tokens.size() && tokens.get(index + 1).equals("BY"))
+                    || token.equals("OR") || token.equals("GROUP") || token.equals("JOIN") || token.equals("UNION");
+        }
+
+        private static boolean isOperand(String token) {
+            return token.equals("?") || token.equals("'") || isIdentifier(token) || isNumber(token);
+        }
+
+        private static boolean isIdentifier(String token) {
+            return !token.isEmpty() && (Character.isLetter(token.charAt(0)) || token.charAt(0) == '_');
+        }
+
+        private static boolean isNumber(String token) {
+            return !token.isEmpty() && (Character.isDigit(token.charAt(0)) || token.charAt(0) == '-');
+        }
+
+        private static DistanceOperator distanceOperator(String token) {
+            for (DistanceOperator operator : DistanceOperator.values()) {
+                if (operator.toString().equals(token)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        private static PredicateOperator predicateOperator(String token) {
+            if (token.equals("<>")) {
+                return PredicateOperator.NEQ;
+            }
+            for (PredicateOperator operator : PredicateOperator.values()) {
+                if (operator.toString().equals(token)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Splits SQL into upper-cased words, numbers, operators and punctuation. A quoted literal
+         * becomes the single token {@code '}.
+         */
+        private static List<String> tokenize(String sql) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '\'') {
+                    i++;
+                    while (i < sql.length()) {
+                        if (sql.charAt(i) == '\'' && i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                        } else if (sql.charAt(i) == '\'') {
+                            break;
+                        } else {
+                            i++;
+                        }
+                    }
+                    i++;
+                    tokens.add("'");
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.'
+                        || (c == '-' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1)))) {
+                    int start = i++;
+                    while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '.')) {
+                        i++;
+                    }
+                    tokens.add(sql.substring(start, i).toUpperCase(Locale.ROOT));
+                } else {
+                    String operator = null;
+                    for (String candidate : OPERATORS) {
+                        if (sql.startsWith(candidate, i)) {
+                            operator = candidate;
+                            break;
+                        }
+                    }
+                    String token = operator != null ? operator : String.valueOf(c);
+                    tokens.add(token);
+                    i += token.length();
+                }
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package synthesizer;
+
+import ast.ASTNode;
+import ast.ExpressionNode;
+import ast.QueryNode;
+import ast.nodes.ColumnReferenceNode;
+import ast.nodes.ConstantValueNode;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.LimitNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.TableNode;
+import ast.enums.SortOrder;
+import model.Table;
+import model.Vector;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The default {@link CostModel}. Every query node costs about one unit, adjusted by priors on how
+ * common an operator is in hand-written vector queries, or, if given, by learned {@link GrammarWeights}.
+ * On top of the priors, constants the example gives no reason to use are penalized:
+ * <ul>
+ *   <li>a constant that appears neither in the expected output nor among the query vectors;</li>
+ *   <li>a comparison of a column with a value the column never takes in the expected output;</li>
+ *   <li>a LIMIT other than the number of expected rows.</li>
+ * </ul>
+ * With these weights, nearest-neighbour queries ({@code ORDER BY embedding <-> ? LIMIT k}) cost about
+ * as much as a single selection on an output value, and are reached within the first few hundred candidates.
+ */
+public class HeuristicCostModel implements CostModel {
+
+    private static final double QUERY_NODE_COST = 1.0;
+    private static final double DISTANCE_COST = 0.5;
+    private static final double UNSEEN_CONSTANT_PENALTY = 2.0;
+    private static final double UNSEEN_COLUMN_VALUE_PENALTY = 1.0;
+    private static final double OTHER_LIMIT_PENALTY = 1.0;
+    // Comparisons of two constants or of a column with itself are constant on every row.
+    private static final double TRIVIAL_PREDICATE_PENALTY = 2.0;
+    private static final double CONSTANT_FIRST_PENALTY = 0.5;
+    private static final double COLUMN_SORT_KEY_PENALTY = 0.5;
+    private static final double DESCENDING_DISTANCE_PENALTY = 0.5;
+
+    private final int outputRowCount;
+    private final Set<Object> outputValues = new HashSet<>();
+    private final Map<String, Set<Object>> outputValuesByColumn = new HashMap<>();
+    private final Set<Vector> queryVectors;
+    // Replaces the built-in priors when set.
+    private final CostModel priors;
+
+    /**
+     * @param outputTable The expected output; its values are the constants queries are expected to use.
+     * @param queryVectors The query vectors of the example, which are never penalized.
+     */
+    public HeuristicCostModel(Table outputTable, List<Vector> queryVectors) {
+        this(outputTable, queryVectors, null);
+    }
+
+    /**
+     * @param priors The costs of operators and productions, e.g. {@link GrammarWeights}; null for the built-in priors.
+     */
+    public HeuristicCostModel(Table outputTable, List<Vector> queryVectors, CostModel priors) {
+        this.priors = priors;
+        this.outputRowCount = outputTable.getRowCount();
+        this.queryVectors = new HashSet<>(queryVectors);
+        List<Table.Column> columns = outputTable.getColumns();
+        for (List<Object> row : outputTable.getRows()) {
+            for (int i = 0; i < columns.size() && i < row.size(); i++) {
+                Object value = valueKey(row.get(i));
+                outputValues.add(value);
+                outputValuesByColumn.computeIfAbsent(columns.get(i).getName(), name -> new HashSet<>()).add(value);
+            }
+        }
+    }
+
+    @Override
+    public double nodeCost(ASTNode node) {
+        return (priors != null ? priors.nodeCost(node) : builtInPrior(node)) + penalty(node);
+    }
+
+    @Override
+    public double stopCost(QueryNode query) {
+        return priors != null ? priors.stopCost(query) : 0.0;
+    }
+
+    private static double builtInPrior(ASTNode node) {
+        if (node instanceof TableNode || node instanceof ColumnReferenceNode || node instanceof ConstantValueNode) {
+            return 0.0;
+        }
+        if (node instanceof DistanceExpressionNode) {
+            return DISTANCE_COST + distancePrior((DistanceExpressionNode) node);
+        }
+        if (node instanceof PredicateNode) {
+            return QUERY_NODE_COST + operatorPrior((PredicateNode) node);
+        }
+        if (node instanceof OrderByNode) {
+            OrderByNode orderBy = (OrderByNode) node;
+            if (!(orderBy.getSortExpression() instanceof DistanceExpressionNode)) {
+                return QUERY_NODE_COST + COLUMN_SORT_KEY_PENALTY;
+            }
+            // Nearest neighbours come first in ascending order of distance.
+            return orderBy.getSortOrder() == SortOrder.ASC ? QUERY_NODE_COST : QUERY_NODE_COST + DESCENDING_DISTANCE_PENALTY;
+        }
+        // Selections, limits and anything else.
+        return QUERY_NODE_COST;
+    }
+
+    private double penalty(ASTNode node) {
+        if (node instanceof ConstantValueNode) {
+            Object value = ((ConstantValueNode) node).getValue();
+            boolean seen = queryVectors.contains(value) || outputValues.contains(valueKey(value));
+            return seen ? 0.0 : UNSEEN_CONSTANT_PENALTY;
+        }
+        if (node instanceof PredicateNode) {
+            return predicatePenalty((PredicateNode) node);
+        }
+        if (node instanceof LimitNode) {
+            return ((LimitNode) node).getValue() == outputRowCount ? 0.0 : OTHER_LIMIT_PENALTY;
+        }
+        return 0.0;
+    }
+
+    private static double distancePrior(DistanceExpressionNode distance) {
+        switch (distance.getOperator()) {
+            case L2_DISTANCE:
+                return 0.0;
+            case COSINE_DISTANCE:
+                return 0.1;
+            case NEGATIVE_INNER_PRODUCT:
+                return 0.2;
+            case L1_DISTANCE:
+                return 0.5;
+            default:
+                throw new IllegalArgumentException("Operator " + distance.getOperator() + " is not enumerated.");
+        }
+    }
+
+    private static double operatorPrior(PredicateNode predicate) {
+        switch (predicate.getOperator()) {
+            case EQ:
+                return 0.0;
+            case LT:
+            case GT:
+                return 0.3;
+            case LTE:
+            case GTE:
+                return 0.4;
+            default:
+                return 0.8;
+        }
+    }
+
+    private double predicatePenalty(PredicateNode predicate) {
+        ExpressionNode left = predicate.getLeft();
+        ExpressionNode right = predicate.getRight();
+        boolean leftIsConstant = left instanceof ConstantValueNode;
+        boolean rightIsConstant = right instanceof ConstantValueNode;
+        if ((leftIsConstant && rightIsConstant) || (left instanceof ColumnReferenceNode && left.equals(right))) {
+            return TRIVIAL_PREDICATE_PENALTY;
+        }
+        if (leftIsConstant && right instanceof ColumnReferenceNode) {
+            return CONSTANT_FIRST_PENALTY + columnValuePenalty((ColumnReferenceNode) right, (ConstantValueNode) left);
+        }
+        if (rightIsConstant && left instanceof ColumnReferenceNode) {
+            return columnValuePenalty((ColumnReferenceNode) left, (ConstantValueNode) right);
+        }
+        return 0.0;
+    }
+
+    private double columnValuePenalty(ColumnReferenceNode column, ConstantValueNode constant) {
+        Set<Object> columnValues = outputValuesByColumn.get(column.getColumnName());
+        if (columnValues == null || columnValues.contains(valueKey(constant.getValue()))) {
+            return 0.0;
+        }
+        return UNSEEN_COLUMN_VALUE_PENALTY;
+    }
+
+    /**
+     * Numbers are compared by value, so 2 and 2.0 (or an int and a long) count as the same constant.
+     */
+    private static Object valueKey(Object value) {
+        return value instanceof Number ? (Object) ((Number) value).doubleValue() : value;
+    }
+}
@@ -0,0 +1,98 @@
+package synthesizer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Lazily composed {@link Iterable}s. Nothing is computed or stored until an iterator is advanced,
+ * and every call to {@code iterator()} starts a fresh pass, so a composed iterable can be re-read
+ * as often as needed at the cost of recomputing its elements.
+ */
+final class LazyIterables {
+
+    private LazyIterables() {
+    }
+
+    static <T, R> Iterable<R> map(Iterable<T> source, Function<? super T, ? extends R> mapper) {
+        return () -> new Iterator<R>() {
+            private final Iterator<T> it = source.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public R next() {
+                return mapper.apply(it.next());
+            }
+        };
+    }
+
+    static <T, R> Iterable<R> flatMap(Iterable<T> source, Function<? super T, ? extends Iterable<? extends R>> mapper) {
+        return () -> new Iterator<R>() {
+            private final Iterator<T> outer = source.iterator();
+            private Iterator<? extends R> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!outer.hasNext()) {
+                        return false;
+                    }
+                    current = mapper.apply(outer.next()).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * @return Every combination of an element of {@code outer} with an element of {@code inner},
+     *         with the inner element varying fastest.
+     */
+    static <A, B, R> Iterable<R> product(Iterable<A> outer, Iterable<B> inner, BiFunction<? super A, ? super B, ? extends R> combiner) {
+        return flatMap(outer, a -> map(inner, b -> combiner.apply(a, b)));
+    }
+
+    /**
+     * @return The elements of {@code first}, followed by those of {@code second}.
+     */
+    static <T> Iterable<T> concat(Iterable<? extends T> first, Iterable<? extends T> second) {
+        return flatMap(List.of(first, second), part -> part);
+    }
+
+    /**
+     * @return The integers from {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    static Iterable<Integer> range(int from, int to) {
+        return () -> new Iterator<Integer>() {
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Integer next() {
+                if (next >= to) {
+                    throw new NoSuchElementException();
+                }
+                return next++;
+            }
+        };
+    }
+}
@@ -0,0 +1,316 @@
+package synthesizer;
+
+import ast.ASTNode;
+import ast.ExpressionNode;
+import ast.FilterNode;
+import ast.LimitableQuery;
+import ast.NodeFactory;
+import ast.OrderableQuery;
+import ast.enums.DistanceOperator;
+import ast.enums.PredicateOperator;
+import ast.enums.SortOrder;
+import ast.nodes.ColumnReferenceNode;
+import ast.nodes.ConstantValueNode;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.LimitNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.SelectNode;
+import ast.nodes.TableNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A flat, hash-consed store for enumerated ASTs.
+ *
+ * <p>Every node is four ints in one buffer: an opcode and up to three operands. Operands are child
+ * node ids, enum ordinals, LIMIT values, or indices into a side pool holding table names, column
+ * names and constant values. Structurally equal nodes get the same id, so ids can be compared and
+ * hashed directly. {@link ASTNode} objects are only built by {@link #toNode(int)}, when a program
+ * is evaluated, translated or reported.
+ *
+ * <p>The buffer and the pool are also a compact, self-contained encoding of the nodes
+ * ({@link #code()}, {@link #poolValues()}), from which {@link #decode} rebuilds a node without the
+ * enumerator that produced it.
+ */
+final class NodeArena {
+
+    static final int TABLE = 0;      // pool index of the table name
+    static final int COLUMN = 1;     // pool index of the column name
+    static final int CONSTANT = 2;   // pool index of the value
+    static final int DISTANCE = 3;   // left, DistanceOperator ordinal, right
+    static final int PREDICATE = 4;  // left, PredicateOperator ordinal, right
+    static final int SELECT = 5;     // source, filter
+    static final int ORDER_BY = 6;   // source, sort expression, SortOrder ordinal
+    static final int LIMIT = 7;      // source, value
+
+    private static final int STRIDE = 4;
+    private static final DistanceOperator[] DISTANCE_OPERATORS = DistanceOperator.values();
+    private static final PredicateOperator[] PREDICATE_OPERATORS = PredicateOperator.values();
+    private static final SortOrder[] SORT_ORDERS = SortOrder.values();
+
+    private int[] data = new int[STRIDE * 1024];
+    private int size;
+    // Open-addressing index from node content to id + 1 (0 marks a free slot).
+    private int[] slots = new int[2048];
+
+    private final List<Object> pool = new ArrayList<>();
+    private final Map<Object, Integer> poolIndex = new HashMap<>();
+    // Leaves of materialized nodes are shared.
+    private final NodeFactory leaves = new NodeFactory();
+
+    int table(String tableName) {
+        return add(TABLE, poolId(tableName), 0, 0);
+    }
+
+    int column(String columnName) {
+        return add(COLUMN, poolId(columnName), 0, 0);
+    }
+
+    int constant(Object value) {
+        return add(CONSTANT, poolId(value), 0, 0);
+    }
+
+    int distance(int left, DistanceOperator operator, int right) {
+        return add(DISTANCE, left, operator.ordinal(), right);
+    }
+
+    int predicate(int left, PredicateOperator operator, int right) {
+        return add(PREDICATE, left, operator.ordinal(), right);
+    }
+
+    int select(int source, int filter) {
+        return add(SELECT, source, filter, 0);
+    }
+
+    int orderBy(int source, int sortExpression, SortOrder sortOrder) {
+        return add(ORDER_BY, source, sortExpression, sortOrder.ordinal());
+    }
+
+    int limit(int source, int value) {
+        return add(LIMIT, source, value, 0);
+    }
+
+    /**
+     * Stores a node built outside the arena, together with its descendants.
+     * @return The id of the node.
+     * @throws IllegalArgumentException if the node or one of its descendants is of a kind the arena does not store.
+     */
+    int intern(ASTNode node) {
+        if (node instanceof TableNode) {
+            return table(((TableNode) node).getTableName());
+        } else if (node instanceof ColumnReferenceNode) {
+            return column(((ColumnReferenceNode) node).getColumnName());
+        } else if (node instanceof ConstantValueNode) {
+            return constant(((ConstantValueNode) node).getValue());
+        } else if (node instanceof DistanceExpressionNode) {
+            DistanceExpressionNode distance = (DistanceExpressionNode) node;
+            return distance(intern(distance.getLeft()), distance.getOperator(), intern(distance.getRight()));
+        } else if (node instanceof PredicateNode) {
+            PredicateNode predicate = (PredicateNode) node;
+            return predicate(intern(predicate.getLeft()), predicate.getOperator(), intern(predicate.getRight()));
+        } else if (node instanceof SelectNode) {
+            SelectNode select = (SelectNode) node;
+            return select(intern(select.getSource()), intern(select.getFilter()));
+        } else if (node instanceof OrderByNode) {
+            OrderByNode orderBy = (OrderByNode) node;
+            return orderBy(intern(orderBy.getSource()), intern(orderBy.getSortExpression()), orderBy.getSortOrder());
+        } else if (node instanceof LimitNode) {
+            LimitNode limit = (LimitNode) node;
+            return limit(intern(limit.getSource()), limit.getValue());
+        }
+        throw new IllegalArgumentException("Cannot store a " + node.getClass().getSimpleName() + " in the arena.");
+    }
+
+    /**
+     * @return The four ints of every node, in id order. Children always come before their parents.
+     */
+    int[] code() {
+        return Arrays.copyOf(data, size * STRIDE);
+    }
+
+    /**
+     * @return The table names, column names and constant values the {@link #code()} refers to, by pool index.
+     */
+    List<Object> poolValues() {
+        return new ArrayList<>(pool);
+    }
+
+    /**
+     * Rebuilds the last node of an encoding made by {@link #code()} and {@link #poolValues()}.
+     * @throws IllegalArgumentException if the encoding is malformed.
+     */
+    static ASTNode decode(int[] code, List<Object> poolValues) {
+        if (code.length == 0 || code.length % STRIDE != 0) {
+            throw new IllegalArgumentException("Encoded nodes must be a non-empty multiple of " + STRIDE + " ints.");
+        }
+        NodeArena arena = new NodeArena();
+        // Maps encoded ids to ids of this arena; children must be encoded before their parents.
+        int[] ids = new int[code.length / STRIDE];
+        try {
+            for (int node = 0; node < ids.length; node++) {
+                int base = node * STRIDE;
+                int a = code[base + 1];
+                int b = code[base + 2];
+                int c = code[base + 3];
+                switch (code[base]) {
+                    case TABLE:
+                        ids[node] = arena.table((String) poolValues.get(a));
+                        break;
+                    case COLUMN:
+                        ids[node] = arena.column((String) poolValues.get(a));
+                        break;
+                    case CONSTANT:
+                        ids[node] = arena.constant(poolValues.get(a));
+                        break;
+                    case DISTANCE:
+                        ids[node] = arena.distance(child(ids, node, a), DISTANCE_OPERATORS[b], child(ids, node, c));
+                        break;
+                    case PREDICATE:
+                        ids[node] = arena.predicate(child(ids, node, a), PREDICATE_OPERATORS[b], child(ids, node, c));
+                        break;
+                    case SELECT:
+                        ids[node] = arena.select(child(ids, node, a), child(ids, node, b));
+                        break;
+                    case ORDER_BY:
+                        ids[node] = arena.orderBy(child(ids, node, a), child(ids, node, b), SORT_ORDERS[c]);
+                        break;
+                    case LIMIT:
+                        ids[node] = arena.limit(child(ids, node, a), b);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown opcode " + code[base] + " for node " + node);
+                }
+            }
+            return arena.toNode(ids[ids.length - 1]);
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Malformed node encoding", e);
+        }
+    }
+
+    private static int child(int[] ids, int parent, int child) {
+        if (child < 0 || child >= parent) {
+            throw new IllegalArgumentException("Node " + parent + " refers to node " + child + ", which does not precede it.");
+        }
+        return ids[child];
+    }
+
+    /**
+     * @return The number of distinct nodes stored so far. Ids range from 0 to size() - 1.
+     */
+    int size() {
+        return size;
+    }
+
+    int opcode(int id) {
+        return data[id * STRIDE];
+    }
+
+    /**
+     * @return The value of a CONSTANT node.
+     */
+    Object constantValue(int id) {
+        return pool.get(data[id * STRIDE + 1]);
+    }
+
+    /**
+     * @return The column name of a COLUMN node.
+     */
+    String columnName(int id) {
+        return (String) pool.get(data[id * STRIDE + 1]);
+    }
+
+    /**
+     * Builds the object form of a node. Column, constant and table leaves are shared between calls;
+     * inner nodes are new objects every time.
+     */
+    ASTNode toNode(int id) {
+        int base = id * STRIDE;
+        int a = data[base + 1];
+        int b = data[base + 2];
+        int c = data[base + 3];
+        switch (data[base]) {
+            case TABLE:
+                return leaves.table((String) pool.get(a));
+            case COLUMN:
+                return leaves.column((String) pool.get(a));
+            case CONSTANT:
+                return leaves.constant(pool.get(a));
+            case DISTANCE:
+                return new DistanceExpressionNode((ExpressionNode) toNode(a), DISTANCE_OPERATORS[b], (ExpressionNode) toNode(c));
+            case PREDICATE:
+                return new PredicateNode((ExpressionNode) toNode(a), PREDICATE_OPERATORS[b], (ExpressionNode) toNode(c));
+            case SELECT:
+                return new SelectNode((OrderableQuery) toNode(a), (FilterNode) toNode(b));
+            case ORDER_BY:
+                return new OrderByNode((OrderableQuery) toNode(a), (ExpressionNode) toNode(b), SORT_ORDERS[c]);
+            case LIMIT:
+                return new LimitNode((LimitableQuery) toNode(a), b);
+            default:
+                throw new IllegalStateException("Unknown opcode " + data[base] + " for node " + id);
+        }
+    }
+
+    private int poolId(Object value) {
+        Integer index = poolIndex.get(value);
+        if (index == null) {
+            index = pool.size();
+            pool.add(value);
+            poolIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private int add(int opcode, int a, int b, int c) {
+        int mask = slots.length - 1;
+        int slot = hash(opcode, a, b, c) & mask;
+        while (slots[slot] != 0) {
+            int existing = slots[slot] - 1;
+            int base = existing * STRIDE;
+            if (data[base] == opcode && data[base + 1] == a && data[base + 2] == b && data[base + 3] == c) {
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        if (id * STRIDE + STRIDE > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        int base = id * STRIDE;
+        data[base] = opcode;
+        data[base + 1] = a;
+        data[base + 2] = b;
+        data[base + 3] = c;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int base = id * STRIDE;
+            int slot = hash(data[base], data[base + 1], data[base + 2], data[base + 3]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(int opcode, int a, int b, int c) {
+        int h = opcode;
+        h = h * 0x9E3779B1 + a;
+        h = h * 0x9E3779B1 + b;
+        h = h * 0x9E3779B1 + c;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,89 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.QueryNode;
+import ast.nodes.AliasedExpression;
+import ast.nodes.ProjectionNode;
+import database.ConnectionManager;
+import database.QueryExecutor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Entry point of a worker process started by {@link ShardedSynthesizer}.
+ *
+ * <p>Usage: {@code ShardWorker <problem file> <depth> <from index> <to index>}. The worker rebuilds the
+ * enumerator from the problem file, evaluates the candidates of the given index range of one depth with
+ * its own database connection, and reports on standard output:
+ * <ul>
+ *   <li>{@code SHARD MATCH <index>} for every matching candidate, as soon as it is found;</li>
+ *   <li>{@code SHARD DONE <count>} with the number of evaluated candidates, when the range is finished.</li>
+ * </ul>
+ * Any other output line is informational. Indices refer to {@link TopDownEnumerator#stream(int)}.
+ */
+public class ShardWorker {
+
+    static final String MATCH_PREFIX = "SHARD MATCH ";
+    static final String DONE_PREFIX = "SHARD DONE ";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: ShardWorker <problem file> <depth> <from index> <to index>");
+            System.exit(2);
+        }
+        SynthesisProblem problem = SynthesisProblem.read(Path.of(args[0]));
+        int depth = Integer.parseInt(args[1]);
+        long fromIndex = Long.parseLong(args[2]);
+        long toIndex = Long.parseLong(args[3]);
+
+        try {
+            run(problem, depth, fromIndex, toIndex);
+        } finally {
+            ConnectionManager.closeConnection();
+        }
+    }
+
+    private static void run(SynthesisProblem problem, int depth, long fromIndex, long toIndex) {
+        SynthesisOptions options = problem.options();
+        TopDownEnumerator enumerator = new TopDownEnumerator(problem.inputTables(), problem.queryVectors(),
+                options.isObservationalEquivalence(), problem.outputTable(), options.isSupersetPruning());
+        ASTEvaluator evaluator = options.isLocalEvaluation() ? new ASTEvaluator(problem.inputTables()) : null;
+        CandidateEvaluator candidateEvaluator = new CandidateEvaluator(evaluator, problem.outputTable(),
+                options.isServerSideComparison());
+        List<AliasedExpression> selectAllColumns = Synthesizer.selectAllColumns(problem.inputTables().get(0));
+
+        long evaluated = 0;
+        try (QueryExecutor queryExecutor = QueryExecutor.withDedicatedConnection()) {
+            queryExecutor.setStatementTimeout(options.getCandidateTimeout());
+            Iterator<QueryNode> bodies = enumerator.stream(depth, fromIndex, toIndex).iterator();
+            long batchStart = fromIndex;
+            while (bodies.hasNext()) {
+                List<QueryNode> batch = new ArrayList<>(options.getBatchSize());
+                while (batch.size() < options.getBatchSize() && bodies.hasNext()) {
+                    batch.add(new ProjectionNode(bodies.next(), selectAllColumns));
+                }
+                boolean[] matched = candidateEvaluator.findSolutions(batch, queryExecutor);
+                evaluated += batch.size();
+                boolean stop = false;
+                for (int i = 0; i < matched.length && !stop; i++) {
+                    if (matched[i]) {
+                        System.out.println(MATCH_PREFIX + (batchStart + i));
+                        System.out.flush();
+                        // Later matches of this range can never come first.
+                        stop = options.isStopAtFirstSolution();
+                    }
+                }
+                if (stop) {
+                    break;
+                }
+                batchStart += batch.size();
+            }
+        }
+        System.out.println(DONE_PREFIX + evaluated);
+        System.out.flush();
+    }
+}
@@ -0,0 +1,214 @@
+package synthesizer;
+
+import ast.QueryNode;
+import ast.nodes.AliasedExpression;
+import ast.nodes.ProjectionNode;
+import model.Table;
+import model.Vector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the search of {@link Synthesizer} in several local worker processes.
+ *
+ * <p>The problem is written to a temporary file once. For every depth, the candidate indices of
+ * {@link TopDownEnumerator#stream(int)} are split into one contiguous range per process, and each range
+ * is evaluated by a {@link ShardWorker} process with its own database connection. Workers report matching
+ * indices on standard output; the driver rebuilds those candidates with {@link TopDownEnumerator#unrank}.
+ * When stopping at the first solution, workers whose range starts after the best match found so far are
+ * killed, so the reported solution is still the first one in enumeration order.
+ */
+public class ShardedSynthesizer {
+
+    // The incubating Vector API, which the JVM only resolves when asked to with --add-modules.
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private final SynthesisOptions options;
+    private final int processCount;
+
+    /**
+     * @param options The options, passed on to every worker.
+     * @param processCount The number of worker processes per depth.
+     */
+    public ShardedSynthesizer(SynthesisOptions options, int processCount) {
+        if (processCount < 1) {
+            throw new IllegalArgumentException("Process count must be at least 1.");
+        }
+        this.options = options;
+        this.processCount = processCount;
+    }
+
+    public List<QueryNode> synthesize(List<Table> inputTables, Table outputTable, List<Vector> queryVectors) {
+        System.out.println("Starting sharded synthesis with " + processCount + " worker processes...");
+        List<QueryNode> solutions = new ArrayList<>();
+        if (inputTables.isEmpty()) {
+            return solutions;
+        }
+
+        TopDownEnumerator enumerator = new TopDownEnumerator(inputTables, queryVectors,
+                options.isObservationalEquivalence(), outputTable, options.isSupersetPruning());
+        List<AliasedExpression> selectAllColumns = Synthesizer.selectAllColumns(inputTables.get(0));
+
+        Path problemFile = null;
+        try {
+            problemFile = Files.createTempFile("synthesis-problem", ".bin");
+            new SynthesisProblem(inputTables, outputTable, queryVectors, options).write(problemFile);
+
+            for (int depth = 1; depth <= Synthesizer.MAX_DEPTH; depth++) {
+                System.out.println("\n--- Enumerating queries at depth: " + depth + " ---");
+                long candidateCount;
+                try {
+                    candidateCount = enumerator.count(depth);
+                } catch (ArithmeticException e) {
+                    candidateCount = Long.MAX_VALUE;
+                }
+                System.out.println("Depth " + depth + " has " + candidateCount + " candidate query bodies.");
+                if (candidateCount > options.getMaxCandidatesPerDepth()) {
+                    System.out.println("Giving up: more than " + options.getMaxCandidatesPerDepth() + " candidates at depth " + depth + ".");
+                    break;
+                }
+
+                for (long index : runShards(problemFile, depth, candidateCount)) {
+                    solutions.add(new ProjectionNode(enumerator.unrank(depth, index), selectAllColumns));
+                    if (options.isStopAtFirstSolution()) {
+                        break;
+                    }
+                }
+                if (!solutions.isEmpty()) {
+                    System.out.println("Solutions found at depth " + depth + ". Stopping search.");
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to run the shard workers", e);
+        } finally {
+            if (problemFile != null) {
+                try {
+                    Files.deleteIfExists(problemFile);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + problemFile);
+                }
+            }
+        }
+
+        System.out.println("Synthesis finished. Found " + solutions.size() + " solution(s).");
+        return solutions;
+    }
+
+    /**
+     * Evaluates one depth in worker processes.
+     * @return The indices of all matching candidates reported by the workers, in ascending order.
+     */
+    private List<Long> runShards(Path problemFile, int depth, long candidateCount) throws IOException {
+        if (candidateCount == 0) {
+            return List.of();
+        }
+        int shards = (int) Math.max(1, Math.min(processCount, candidateCount));
+        long shardSize = (candidateCount + shards - 1) / shards;
+
+        ConcurrentSkipListSet<Long> matches = new ConcurrentSkipListSet<>();
+        AtomicLong firstMatch = new AtomicLong(Long.MAX_VALUE);
+        List<Process> processes = new ArrayList<>();
+        List<Long> shardStarts = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                long from = Math.min(candidateCount, shard * shardSize);
+                long to = Math.min(candidateCount, from + shardSize);
+                Process process;
+                // Reader threads cancel shards through these lists, so they only change under their lock.
+                synchronized (processes) {
+                    if (options.isStopAtFirstSolution() && from > firstMatch.get()) {
+                        break;
+                    }
+                    process = startWorker(problemFile, depth, from, to);
+                    processes.add(process);
+                    shardStarts.add(from);
+                }
+                Thread reader = new Thread(() -> readWorkerOutput(process, from, matches, firstMatch, processes, shardStarts),
+                        "shard-reader-" + shard);
+                reader.start();
+                readers.add(reader);
+            }
+
+            for (int shard = 0; shard < readers.size(); shard++) {
+                Process process = processes.get(shard);
+                int exitCode = process.waitFor();
+                readers.get(shard).join();
+                boolean cancelled = options.isStopAtFirstSolution() && shardStarts.get(shard) > firstMatch.get();
+                if (exitCode != 0 && !cancelled) {
+                    throw new IllegalStateException("Shard worker for indices from " + shardStarts.get(shard)
+                            + " at depth " + depth + " exited with code " + exitCode + ".");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shard workers", e);
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    private Process startWorker(Path problemFile, int depth, long from, long to) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java));
+        // Workers compute distances with the SIMD kernels if this process can.
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            command.add("--add-modules");
+            command.add(VECTOR_MODULE);
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(), problemFile.toString(),
+                String.valueOf(depth), String.valueOf(from), String.valueOf(to)));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    private void readWorkerOutput(Process process, long shardStart, ConcurrentSkipListSet<Long> matches,
+                                  AtomicLong firstMatch, List<Process> processes, List<Long> shardStarts) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ShardWorker.MATCH_PREFIX)) {
+                    long index = Long.parseLong(line.substring(ShardWorker.MATCH_PREFIX.length()).trim());
+                    matches.add(index);
+                    long best = firstMatch.accumulateAndGet(index, Math::min);
+                    if (options.isStopAtFirstSolution()) {
+                        cancelShardsAfter(best, processes, shardStarts);
+                    }
+                } else if (line.startsWith(ShardWorker.DONE_PREFIX)) {
+                    System.out.println("Shard from index " + shardStart + " evaluated "
+                            + line.substring(ShardWorker.DONE_PREFIX.length()).trim() + " candidates.");
+                } else {
+                    System.out.println("[shard " + shardStart + "] " + line);
+                }
+            }
+        } catch (IOException e) {
+            // The worker was killed or its output closed; its exit code is checked by the driver.
+        }
+    }
+
+    private static void cancelShardsAfter(long index, List<Process> processes, List<Long> shardStarts) {
+        synchronized (processes) {
+            for (int i = 0; i < processes.size(); i++) {
+                if (shardStarts.get(i) > index) {
+                    processes.get(i).destroy();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package synthesizer;
+
+import ast.ASTNode;
+import ast.QueryNode;
+import model.Table;
+import model.Vector;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solutions of earlier runs, keyed by a fingerprint of the example, kept in an append-only file so
+ * they survive the process and can be shared by several processes.
+ *
+ * <p>A solution is stored as its query body in the encoding of {@link NodeArena} (the four ints of each node,
+ * and the Java-serialized pool of table names, column names and constants), so it can be rebuilt without
+ * building an enumerator. Its position in the depth-by-depth enumeration and its SQL are stored as well;
+ * the SQL is checked again when a solution is rebuilt.
+ *
+ * <p>The file is JSON Lines with one solved example per line:
+ * {@code {"fingerprint": "...", "solutions": [{"depth": 2, "index": 17, "sql": "SELECT ...", "code": [0, 0, 0, 0, ...],
+ * "pool": "<Base64>"}]}}.
+ * The file is read once, when the cache is opened; a later line for the same fingerprint replaces an
+ * earlier one, and malformed lines (e.g. one cut short by a crash) are skipped. Thread-safe.
+ */
+public class SolutionCache {
+
+    /**
+     * A solution as the body at {@code index} of {@code depth}, wrapped in the final projection.
+     * @param code The nodes of the body, see {@link NodeArena#code()}.
+     * @param pool The values the nodes refer to, see {@link NodeArena#poolValues()}.
+     */
+    public record Solution(int depth, long index, String sql, int[] code, List<Object> pool) {
+
+        /**
+         * @throws IllegalArgumentException if the body has nodes the enumerator does not generate.
+         */
+        static Solution of(int depth, long index, QueryNode body, String sql) {
+            NodeArena arena = new NodeArena();
+            arena.intern(body);
+            return new Solution(depth, index, sql, arena.code(), arena.poolValues());
+        }
+
+        /**
+         * @return The query body, without the final projection.
+         * @throws IllegalArgumentException if the stored nodes do not form a query body.
+         */
+        QueryNode body() {
+            ASTNode body = NodeArena.decode(code, pool);
+            if (!(body instanceof QueryNode)) {
+                throw new IllegalArgumentException("The stored nodes are not a query.");
+            }
+            return (QueryNode) body;
+        }
+    }
+
+    // Changes whenever the fingerprint encoding changes, so old entries are no longer found.
+    private static final int FINGERPRINT_VERSION = 3;
+
+    private final Path file;
+    private final Map<String, List<Solution>> solutions = new HashMap<>();
+
+    private SolutionCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the cache stored in {@code file}, which is created on the first {@link #put} if it does not exist.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    public static SolutionCache open(Path file) throws IOException {
+        SolutionCache cache = new SolutionCache(file);
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !cache.load(line)) {
+                    skipped++;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return cache;
+        }
+        System.out.println("Loaded solutions of " + cache.solutions.size() + " examples from " + file
+                + " (" + skipped + " malformed lines skipped).");
+        return cache;
+    }
+
+    /**
+     * @return The solutions recorded for the fingerprint, in enumeration order, or an empty list.
+     */
+    public synchronized List<Solution> get(String fingerprint) {
+        return solutions.getOrDefault(fingerprint, List.of());
+    }
+
+    /**
+     * Records the solutions of an example and appends them to the file, replacing earlier ones.
+     * @throws IOException if the file cannot be written; the solutions are then kept in memory only.
+     */
+    public synchronized void put(String fingerprint, List<Solution> found) throws IOException {
+        solutions.put(fingerprint, List.copyOf(found));
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        StringBuilder line = new StringBuilder("{\"fingerprint\": ").append(Json.quote(fingerprint))
+                .append(", \"solutions\": [");
+        for (int i = 0; i < found.size(); i++) {
+            Solution solution = found.get(i);
+            line.append(i == 0 ? "" : ", ")
+                    .append("{\"depth\": ").append(solution.depth())
+                    .append(", \"index\": ").append(solution.index())
+                    .append(", \"sql\": ").append(Json.quote(solution.sql()))
+                    .append(", \"code\": ").append(Arrays.toString(solution.code()))
+                    .append(", \"pool\": \"").append(base64.encodeToString(serialize(solution.pool()))).append("\"}");
+        }
+        line.append("]}\n");
+        // The whole line is appended under an exclusive lock, so lines appended by concurrent processes
+        // do not interleave even where one write call does not take the whole buffer.
+        ByteBuffer bytes = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            // Released when the channel is closed.
+            channel.lock();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * @return false if the line is not a valid entry.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean load(String line) {
+        try {
+            Map<String, Object> entry = Json.parseObject(line);
+            Object fingerprint = entry.get("fingerprint");
+            Object list = entry.get("solutions");
+            if (!(fingerprint instanceof String) || !(list instanceof List)) {
+                return false;
+            }
+            List<Solution> loaded = new ArrayList<>();
+            for (Object item : (List<Object>) list) {
+                if (!(item instanceof Map)) {
+                    return false;
+                }
+                Map<String, Object> solution = (Map<String, Object>) item;
+                Object depth = solution.get("depth");
+                Object index = solution.get("index");
+                Object sql = solution.get("sql");
+                Object code = solution.get("code");
+                Object pool = solution.get("pool");
+                if (!(depth instanceof Double) || !(index instanceof Double) || !(sql instanceof String)
+                        || !(code instanceof List) || !(pool instanceof String)) {
+                    return false;
+                }
+                List<Object> codeList = (List<Object>) code;
+                int[] codeInts = new int[codeList.size()];
+                for (int i = 0; i < codeInts.length; i++) {
+                    if (!(codeList.get(i) instanceof Double)) {
+                        return false;
+                    }
+                    codeInts[i] = ((Double) codeList.get(i)).intValue();
+                }
+                loaded.add(new Solution(((Double) depth).intValue(), ((Double) index).longValue(), (String) sql,
+                        codeInts, deserialize(Base64.getDecoder().decode((String) pool))));
+            }
+            solutions.put((String) fingerprint, List.copyOf(loaded));
+            return true;
+        } catch (IllegalArgumentException | IOException | ClassNotFoundException | ClassCastException e) {
+            return false;
+        }
+    }
+
+    private static byte[] serialize(List<Object> pool) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(pool));
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (List<Object>) in.readObject();
+        }
+    }
+
+    /**
+     * Computes a stable fingerprint of an example and of the options that decide which solutions a run
+     * returns. Tables are compared by name, columns, rows and row order significance; values by type and content.
+     * @return A hex-encoded SHA-256 digest.
+     */
+    public static String fingerprint(List<Table> inputTables, Table outputTable, List<Vector> queryVectors,
+                                     SynthesisOptions options) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(FINGERPRINT_VERSION);
+            out.writeInt(inputTables.size());
+            for (Table table : inputTables) {
+                writeTable(out, table);
+            }
+            writeTable(out, outputTable);
+            out.writeInt(queryVectors.size());
+            for (Vector vector : queryVectors) {
+                writeValue(out, vector);
+            }
+            out.writeBoolean(options.isObservationalEquivalence());
+            out.writeBoolean(options.isSupersetPruning());
+            out.writeBoolean(options.isStopAtFirstSolution());
+            out.writeBoolean(options.isServerSideComparison());
+            out.writeBoolean(options.isLocalEvaluation());
+            // A candidate that times out is not a solution, so the timeout decides which solutions are found.
+            out.writeBoolean(options.getCandidateTimeout() != null);
+            if (options.getCandidateTimeout() != null) {
+                out.writeLong(options.getCandidateTimeout().toNanos());
+            }
+            out.writeLong(options.getMaxCandidatesPerDepth());
+            out.flush();
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Neither can happen for an in-memory stream and a digest every JVM provides.
+            throw new IllegalStateException("Could not fingerprint the example", e);
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, Table table) throws IOException {
+        out.writeUTF(String.valueOf(table.getName()));
+        out.writeBoolean(table.isOrdered());
+        out.writeInt(table.getColumnCount());
+        for (Table.Column column : table.getColumns()) {
+            out.writeUTF(column.getName());
+            out.writeUTF(column.getType());
+        }
+        out.writeInt(table.getRowCount());
+        for (List<Object> row : table.getRows()) {
+            out.writeInt(row.size());
+            for (Object value : row) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+        } else if (value instanceof Vector) {
+            Vector vector = (Vector) value;
+            out.writeByte(1);
+            out.writeInt(vector.getDimensions());
+            for (float component : vector.getData()) {
+                out.writeFloat(component);
+            }
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(2);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(3);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(4);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(5);
+            out.writeUTF(value.getClass().getName());
+            // writeUTF is limited to 64KiB, so long strings are written as raw bytes.
+            byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package synthesizer;
+
+import java.io.Serializable;
+import java.time.Duration;
+
+/**
+ * Configuration switches for a {@link Synthesizer} run.
+ * Every setter returns this instance so options can be chained.
+ */
+public class SynthesisOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean localEvaluation = true;
+    private boolean observationalEquivalence = false;
+    // Null to follow localEvaluation and observationalEquivalence.
+    private Boolean supersetPruning;
+    private int workerCount = 1;
+    private boolean stopAtFirstSolution = false;
+    private int batchSize = 1;
+    private boolean serverSideComparison = false;
+    private long maxCandidatesPerDepth = Long.MAX_VALUE;
+    private boolean bestFirstSearch = false;
+    private boolean topKFastPath = false;
+    private Duration candidateTimeout;
+    private int resultCacheEntries = 100_000;
+    private long resultCacheBytes = 64L * 1024 * 1024;
+    // Not passed on to shard workers, which always search depth by depth and report to the driver.
+    private transient CostModel costModel;
+    private transient GrammarWeights grammarWeights;
+    private transient SolutionCache solutionCache;
+
+    /**
+     * Whether candidates are first evaluated in-process with {@link ast.ASTEvaluator}.
+     * When enabled, the database is only used to confirm candidates that already match locally,
+     * and for candidates the evaluator cannot decide on its own.
+     */
+    public boolean isLocalEvaluation() {
+        return localEvaluation;
+    }
+
+    public SynthesisOptions setLocalEvaluation(boolean localEvaluation) {
+        this.localEvaluation = localEvaluation;
+        return this;
+    }
+
+    /**
+     * Whether the enumerator keeps only one sub-query and one filter per distinct result on the
+     * example inputs. See {@link TopDownEnumerator#TopDownEnumerator(java.util.List, java.util.List, boolean)}.
+     */
+    public boolean isObservationalEquivalence() {
+        return observationalEquivalence;
+    }
+
+    public SynthesisOptions setObservationalEquivalence(boolean observationalEquivalence) {
+        this.observationalEquivalence = observationalEquivalence;
+        return this;
+    }
+
+    /**
+     * Whether the enumerator leaves out filters that drop rows the expected output needs. Which rows a filter
+     * drops is decided in-process by {@link ast.ASTEvaluator}, so unless set explicitly this is on exactly when
+     * {@link #isLocalEvaluation() local evaluation} or {@link #isObservationalEquivalence() observational
+     * equivalence} is, both of which rely on the evaluator as well. See
+     * {@link TopDownEnumerator#TopDownEnumerator(java.util.List, java.util.List, boolean, model.Table, boolean)}.
+     */
+    public boolean isSupersetPruning() {
+        return supersetPruning != null ? supersetPruning : localEvaluation || observationalEquivalence;
+    }
+
+    public SynthesisOptions setSupersetPruning(boolean supersetPruning) {
+        this.supersetPruning = supersetPruning;
+        return this;
+    }
+
+    /**
+     * Number of threads evaluating candidates of a depth in parallel. Each worker uses its own
+     * database connection. Solutions are reported in the same order as a single-threaded run.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public SynthesisOptions setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1.");
+        }
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    /**
+     * Whether to stop after the first matching candidate (in enumeration order) instead of
+     * collecting every solution of the depth at which solutions are found.
+     */
+    public boolean isStopAtFirstSolution() {
+        return stopAtFirstSolution;
+    }
+
+    public SynthesisOptions setStopAtFirstSolution(boolean stopAtFirstSolution) {
+        this.stopAtFirstSolution = stopAtFirstSolution;
+        return this;
+    }
+
+    /**
+     * Number of candidates sent to the database in one round trip. With 1, every candidate is
+     * executed on its own; larger values use {@link database.QueryExecutor#executeBatch(java.util.List)}.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public SynthesisOptions setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Whether candidates are compared with the expected output inside the database, so that only a
+     * boolean crosses the wire per candidate. Values are then compared exactly rather than with the
+     * float and vector tolerance of {@link model.Table#equals}.
+     */
+    public boolean isServerSideComparison() {
+        return serverSideComparison;
+    }
+
+    public SynthesisOptions setServerSideComparison(boolean serverSideComparison) {
+        this.serverSideComparison = serverSideComparison;
+        return this;
+    }
+
+    /**
+     * Upper bound on the number of candidates of a single depth. Before a depth is evaluated its
+     * candidates are counted ({@link TopDownEnumerator#count(int)}), and the search gives up if the
+     * count exceeds this bound. Unbounded by default. With best-first search, there are no depths to
+     * count, and this bounds the total number of candidates evaluated instead.
+     */
+    public long getMaxCandidatesPerDepth() {
+        return maxCandidatesPerDepth;
+    }
+
+    public SynthesisOptions setMaxCandidatesPerDepth(long maxCandidatesPerDepth) {
+        if (maxCandidatesPerDepth < 1) {
+            throw new IllegalArgumentException("Maximum candidates per depth must be at least 1.");
+        }
+        this.maxCandidatesPerDepth = maxCandidatesPerDepth;
+        return this;
+    }
+
+    /**
+     * Whether candidates are evaluated cheapest first under the {@link #getCostModel() cost model}
+     * ({@link BestFirstEnumerator}) instead of depth by depth. The search then stops at the first
+     * solution, which is the cheapest one.
+     */
+    public boolean isBestFirstSearch() {
+        return bestFirstSearch;
+    }
+
+    public SynthesisOptions setBestFirstSearch(boolean bestFirstSearch) {
+        this.bestFirstSearch = bestFirstSearch;
+        return this;
+    }
+
+    /**
+     * Whether the run first checks if the expected output is the top-k result of sorting the primary table,
+     * or a selection of it by one predicate, by distance to a query vector ({@link TopKSearch}). Candidates of
+     * that shape are checked in-process from one ranking of the rows per sort key, and only the consistent
+     * ones are executed. If any is a solution, the search stops there, even if a smaller query would also match.
+     */
+    public boolean isTopKFastPath() {
+        return topKFastPath;
+    }
+
+    public SynthesisOptions setTopKFastPath(boolean topKFastPath) {
+        this.topKFastPath = topKFastPath;
+        return this;
+    }
+
+    /**
+     * The time a single candidate may run on the database before it is cancelled and counted as not
+     * matching, or null for no limit. See {@link database.QueryExecutor#setStatementTimeout}.
+     */
+    public Duration getCandidateTimeout() {
+        return candidateTimeout;
+    }
+
+    public SynthesisOptions setCandidateTimeout(Duration candidateTimeout) {
+        if (candidateTimeout != null && (candidateTimeout.isNegative() || candidateTimeout.isZero())) {
+            throw new IllegalArgumentException("Candidate timeout must be positive.");
+        }
+        this.candidateTimeout = candidateTimeout;
+        return this;
+    }
+
+    /**
+     * Maximum number of database results kept for the run in a {@link database.ResultCache}, so that a
+     * candidate enumerated again (e.g. at a later depth) is not executed again; 0 disables the cache.
+     */
+    public int getResultCacheEntries() {
+        return resultCacheEntries;
+    }
+
+    public SynthesisOptions setResultCacheEntries(int resultCacheEntries) {
+        if (resultCacheEntries < 0) {
+            throw new IllegalArgumentException("Result cache entries cannot be negative.");
+        }
+        this.resultCacheEntries = resultCacheEntries;
+        return this;
+    }
+
+    /**
+     * Maximum estimated memory, in bytes, held by the result cache of a run.
+     */
+    public long getResultCacheBytes() {
+        return resultCacheBytes;
+    }
+
+    public SynthesisOptions setResultCacheBytes(long resultCacheBytes) {
+        if (resultCacheBytes < 1) {
+            throw new IllegalArgumentException("Result cache size must be at least 1 byte.");
+        }
+        this.resultCacheBytes = resultCacheBytes;
+        return this;
+    }
+
+    /**
+     * The cost model of best-first search, or null for a {@link HeuristicCostModel} built from the example
+     * and the {@link #getGrammarWeights() grammar weights}.
+     */
+    public CostModel getCostModel() {
+        return costModel;
+    }
+
+    public SynthesisOptions setCostModel(CostModel costModel) {
+        this.costModel = costModel;
+        return this;
+    }
+
+    /**
+     * Learned priors of the default cost model of best-first search, e.g. from
+     * {@link GrammarWeights#train(java.nio.file.Path)}; null for the built-in priors. Ignored if a
+     * {@link #getCostModel() cost model} is set.
+     */
+    public GrammarWeights getGrammarWeights() {
+        return grammarWeights;
+    }
+
+    public SynthesisOptions setGrammarWeights(GrammarWeights grammarWeights) {
+        this.grammarWeights = grammarWeights;
+        return this;
+    }
+
+    /**
+     * Solutions of earlier runs, e.g. from {@link SolutionCache#open(java.nio.file.Path)}, or null for none.
+     * An example solved before is answered from the cache without enumerating, and the solutions of every
+     * completed run are added to it. Not used by best-first search.
+     */
+    public SolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
+    public SynthesisOptions setSolutionCache(SolutionCache solutionCache) {
+        this.solutionCache = solutionCache;
+        return this;
+    }
+}
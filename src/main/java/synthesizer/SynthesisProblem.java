@@ -0,0 +1,43 @@
+package synthesizer;
+
+import model.Table;
+import model.Vector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Everything a {@link ShardWorker} needs to rebuild the driver's search space: the example, the
+ * query vectors and the options. Stored as a file so workers need no other channel to the driver.
+ */
+record SynthesisProblem(List<Table> inputTables, Table outputTable, List<Vector> queryVectors,
+                        SynthesisOptions options) implements Serializable {
+
+    SynthesisProblem {
+        inputTables = List.copyOf(inputTables);
+        queryVectors = List.copyOf(queryVectors);
+    }
+
+    void write(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(this);
+        }
+    }
+
+    static SynthesisProblem read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objectIn = new ObjectInputStream(in)) {
+            return (SynthesisProblem) objectIn.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Not a synthesis problem file: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package synthesizer;
+
+import ast.QueryNode;
+
+import java.util.List;
+
+/**
+ * The outcome of a synthesis run that may have been stopped early, see
+ * {@link Synthesizer#synthesize(List, model.Table, List, java.time.Instant, CancellationToken)}.
+ */
+public class SynthesisResult {
+
+    /**
+     * A candidate that did not produce the expected output.
+     * @param rowOverlap The rows the candidate has in common with the expected output, as multisets, divided
+     *                   by the row count of the larger of the two; 1 only for a solution up to row order.
+     */
+    public record PartialMatch(QueryNode query, double rowOverlap) {}
+
+    private final List<QueryNode> solutions;
+    private final List<PartialMatch> closestMatches;
+    private final long evaluatedCount;
+    private final boolean complete;
+
+    public SynthesisResult(List<QueryNode> solutions, List<PartialMatch> closestMatches, long evaluatedCount, boolean complete) {
+        this.solutions = List.copyOf(solutions);
+        this.closestMatches = List.copyOf(closestMatches);
+        this.evaluatedCount = evaluatedCount;
+        this.complete = complete;
+    }
+
+    public List<QueryNode> getSolutions() {
+        return solutions;
+    }
+
+    /**
+     * @return The non-matching candidates closest to the expected output, best first. Only candidates whose
+     *         rows were computed (in-process or fetched from the database) are ranked.
+     */
+    public List<PartialMatch> getClosestMatches() {
+        return closestMatches;
+    }
+
+    /**
+     * @return The number of candidate query bodies handed to evaluation.
+     */
+    public long getEvaluatedCount() {
+        return evaluatedCount;
+    }
+
+    /**
+     * @return false if the search was stopped by its deadline or cancellation token before it finished.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
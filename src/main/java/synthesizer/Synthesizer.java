@@ -1,88 +1,437 @@
 package synthesizer;
 
+import ast.ASTEvaluator;
+import ast.ASTTranslator;
 import ast.QueryNode;
 import ast.nodes.*;
-import ast.ASTTranslator;
+import database.ConnectionManager;
 import database.QueryExecutor;
+import database.ResultCache;
 import model.Table;
 import model.Vector;
+
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 public class Synthesizer {
 
+    // Queries are searched up to this depth.
+    static final int MAX_DEPTH = 5;
+
+    // The number of closest matches reported by a run with a deadline or cancellation token.
+    static final int CLOSEST_MATCH_COUNT = 5;
+
     private final QueryExecutor queryExecutor;
-    private final ASTTranslator sqlTranslator;
+    private final SynthesisOptions options;
 
     public Synthesizer(QueryExecutor queryExecutor) {
+        this(queryExecutor, new SynthesisOptions());
+    }
+
+    public Synthesizer(QueryExecutor queryExecutor, SynthesisOptions options) {
         this.queryExecutor = queryExecutor;
-        this.sqlTranslator = new ASTTranslator(); // Instantiate the translator
+        this.options = options;
     }
 
     /**
      * Synthesizes queries using a top-down enumerative search.
      */
     public List<QueryNode> synthesize(List<Table> inputTables, Table outputTable, List<Vector> queryVectors) {
+        return run(inputTables, outputTable, queryVectors, null, null, null).getSolutions();
+    }
+
+    /**
+     * Synthesizes queries like {@link #synthesize(List, Table, List)}, but stops early once the deadline has
+     * passed or the token is cancelled. Statements still running at that point are cancelled on the server
+     * ({@link QueryExecutor#cancel()}), and statements are given the time left as their query timeout.
+     * Candidates are executed on executors owned by this run, never on the one given to the constructor,
+     * so that cancelling does not affect other users of that executor.
+     * @param deadline The time by which the search must stop, or null for none.
+     * @param cancellationToken A token another thread may cancel to stop the search, or null for none.
+     * @return The solutions found so far, and the closest non-matching candidates.
+     */
+    public SynthesisResult synthesize(List<Table> inputTables, Table outputTable, List<Vector> queryVectors,
+                                      Instant deadline, CancellationToken cancellationToken) {
+        return run(inputTables, outputTable, queryVectors, deadline, cancellationToken,
+                new ClosestMatches(outputTable, CLOSEST_MATCH_COUNT));
+    }
+
+    private SynthesisResult run(List<Table> inputTables, Table outputTable, List<Vector> queryVectors,
+                                Instant deadline, CancellationToken cancellationToken, ClosestMatches closestMatches) {
 
         System.out.println("Starting top-down synthesis process...");
         List<QueryNode> solutions = new ArrayList<>();
 
         if (inputTables.isEmpty()) {
-            return solutions;
+            return new SynthesisResult(solutions, List.of(), 0, true);
         }
         Table primaryTable = inputTables.get(0);
 
-        TopDownEnumerator enumerator = new TopDownEnumerator(inputTables, queryVectors);
-
         // Pre-create the "SELECT *" part for final assembly
-        List<AliasedExpression> selectAllColumns = primaryTable.getColumnNames().stream()
-                .map(colName -> new AliasedExpression(new ColumnReferenceNode(colName)))
-                .collect(Collectors.toList());
+        List<AliasedExpression> selectAllColumns = selectAllColumns(primaryTable);
 
-        for (int depth = 1; depth <= 5; depth++) { // Try up to a reasonable depth
-            System.out.println("\n--- Enumerating queries at depth: " + depth + " ---");
+        // Solutions are cached with their place in the depth-by-depth enumeration, which best-first search lacks.
+        // The cache is looked up before the enumerator is built, and a hit rebuilds the solutions from their
+        // stored nodes, so it never builds the enumerator.
+        SolutionCache solutionCache = options.isBestFirstSearch() ? null : options.getSolutionCache();
+        String fingerprint = null;
+        List<SolutionCache.Solution> cachedSolutions = List.of();
+        if (solutionCache != null) {
+            fingerprint = SolutionCache.fingerprint(inputTables, outputTable, queryVectors, options);
+            cachedSolutions = solutionCache.get(fingerprint);
+        }
 
-            // 1. Generate all possible query BODIES (e.g., TableNode, OrderByNode, SelectNode)
-            List<QueryNode> candidateBodies = enumerator.enumerate(depth);
+        if (!cachedSolutions.isEmpty()) {
+            List<QueryNode> cached = rebuild(cachedSolutions, selectAllColumns);
+            if (!cached.isEmpty()) {
+                System.out.println("Synthesis finished. Found " + cached.size() + " cached solution(s).");
+                return new SynthesisResult(cached, List.of(), 0, true);
+            }
+        }
 
-            System.out.println("Generated " + candidateBodies.size() + " candidate query bodies.");
+        TopDownEnumerator enumerator = new TopDownEnumerator(inputTables, queryVectors,
+                options.isObservationalEquivalence(), outputTable, options.isSupersetPruning());
+        List<SolutionCache.Solution> found = new ArrayList<>();
 
-            // 2. Evaluate each candidate by WRAPPING it in a final ProjectionNode
-            for (QueryNode body : candidateBodies) {
+        ASTEvaluator evaluator = options.isLocalEvaluation() ? new ASTEvaluator(inputTables) : null;
+        ResultCache resultCache = options.getResultCacheEntries() > 0
+                ? new ResultCache(options.getResultCacheEntries(), options.getResultCacheBytes())
+                : null;
+        CandidateEvaluator candidateEvaluator = new CandidateEvaluator(evaluator, outputTable,
+                options.isServerSideComparison(), closestMatches, resultCache);
 
-                // --- THIS IS THE CRITICAL FIX ---
-                // Every generated body must be wrapped in a ProjectionNode to form a complete,
-                // executable SELECT statement.
-                QueryNode finalCandidateAST = new ProjectionNode(body, selectAllColumns);
-                // --- END OF FIX ---
+        boolean stoppable = deadline != null || cancellationToken != null;
+        BooleanSupplier stopRequested = () -> (cancellationToken != null && cancellationToken.isCancelled())
+                || (deadline != null && !Instant.now().isBefore(deadline));
+        // Building the enumerator's memoized lists can itself take a long time, so it polls as well.
+        enumerator.setStopRequested(stopRequested);
 
-                try {
-                    String sql = sqlTranslator.translate(finalCandidateAST);
-                    Table resultTable = queryExecutor.executeQuery(sql);
+        // Worker threads each get their own executor, and therefore their own pooled connection.
+        // One extra slot is kept for the executor passed to the constructor.
+        int workerCount = options.getWorkerCount();
+        List<QueryExecutor> workerExecutors = new ArrayList<>();
+        ExecutorService workerPool = null;
+        if (workerCount > 1) {
+            ConnectionManager.ensureCapacity(workerCount + 1);
+            workerPool = Executors.newFixedThreadPool(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workerExecutors.add(QueryExecutor.withDedicatedConnection());
+            }
+        }
+
+        // A run with a deadline or timeout gets an executor of its own, which may be cancelled and
+        // configured without harm to other work.
+        boolean ownExecutor = stoppable || options.getCandidateTimeout() != null;
+        QueryExecutor sequentialExecutor = ownExecutor && workerPool == null ? new QueryExecutor() : queryExecutor;
+        List<QueryExecutor> runExecutors = new ArrayList<>(workerExecutors);
+        if (sequentialExecutor != queryExecutor) {
+            runExecutors.add(sequentialExecutor);
+        }
+        for (QueryExecutor runExecutor : runExecutors) {
+            runExecutor.setDeadline(deadline);
+            runExecutor.setStatementTimeout(options.getCandidateTimeout());
+        }
+        Runnable unregister = () -> {};
+        if (cancellationToken != null) {
+            unregister = cancellationToken.onCancel(() -> runExecutors.forEach(QueryExecutor::cancel));
+        }
 
-                    if (resultTable.equals(outputTable)) {
-                        System.out.println("SUCCESS: Found a matching query!");
-                        System.out.println("SQL: " + sql);
-                        solutions.add(finalCandidateAST);
+        long evaluatedCount = 0;
+        boolean stopped = false;
+        try {
+            if (options.isTopKFastPath() && !stopRequested.getAsBoolean()) {
+                System.out.println("\n--- Checking top-k queries by distance ---");
+                QueryExecutor topKExecutor = workerExecutors.isEmpty() ? sequentialExecutor : workerExecutors.get(0);
+                solutions.addAll(new TopKSearch(inputTables, enumerator, outputTable, selectAllColumns, stopRequested)
+                        .search(candidateEvaluator, topKExecutor, options.isStopAtFirstSolution()));
+            }
+            if (!solutions.isEmpty()) {
+                System.out.println("Found " + solutions.size() + " top-k solution(s). Skipping enumeration.");
+            } else if (options.isBestFirstSearch()) {
+                CostModel costModel = options.getCostModel() != null
+                        ? options.getCostModel()
+                        : new HeuristicCostModel(outputTable, queryVectors, options.getGrammarWeights());
+                BestFirstEnumerator bestFirst = new BestFirstEnumerator(inputTables, queryVectors, costModel,
+                        options.isObservationalEquivalence(), outputTable, options.isSupersetPruning(), MAX_DEPTH,
+                        stopRequested);
+                System.out.println("\n--- Enumerating queries in order of cost ---");
+                CandidateFeed feed = new CandidateFeed(
+                        bestFirst.stream().limit(options.getMaxCandidatesPerDepth()).iterator(),
+                        selectAllColumns, options.getBatchSize(), stopRequested);
+                solutions.addAll((workerPool == null
+                        ? evaluateSequentially(feed, candidateEvaluator, sequentialExecutor, true)
+                        : evaluateInParallel(feed, candidateEvaluator, workerPool, workerExecutors, true)).values());
+                System.out.println("Evaluated " + feed.getProduced() + " candidate query bodies.");
+                evaluatedCount += feed.getProduced();
+                stopped = feed.isStopped();
+            } else {
+                for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                    if (stopRequested.getAsBoolean()) {
+                        stopped = true;
+                        break;
+                    }
+                    System.out.println("\n--- Enumerating queries at depth: " + depth + " ---");
+
+                    long candidateCount;
+                    try {
+                        candidateCount = enumerator.count(depth);
+                    } catch (ArithmeticException e) {
+                        candidateCount = Long.MAX_VALUE;
+                    }
+                    System.out.println("Depth " + depth + " has " + candidateCount + " candidate query bodies.");
+                    if (candidateCount > options.getMaxCandidatesPerDepth()) {
+                        System.out.println("Giving up: more than " + options.getMaxCandidatesPerDepth() + " candidates at depth " + depth + ".");
+                        break;
+                    }
+
+                    // 1. Lazily generate all possible query BODIES (e.g., TableNode, OrderByNode, SelectNode).
+                    // 2. Evaluate each candidate by WRAPPING it in a final ProjectionNode.
+                    // Every generated body must be wrapped in a ProjectionNode to form a complete,
+                    // executable SELECT statement. Bodies are generated only as fast as they are evaluated.
+                    CandidateFeed feed = new CandidateFeed(enumerator.stream(depth).iterator(), selectAllColumns,
+                            options.getBatchSize(), stopRequested);
+
+                    NavigableMap<Long, QueryNode> matches = workerPool == null
+                            ? evaluateSequentially(feed, candidateEvaluator, sequentialExecutor, options.isStopAtFirstSolution())
+                            : evaluateInParallel(feed, candidateEvaluator, workerPool, workerExecutors,
+                                    options.isStopAtFirstSolution());
+                    ASTTranslator translator = new ASTTranslator();
+                    for (Map.Entry<Long, QueryNode> match : matches.entrySet()) {
+                        solutions.add(match.getValue());
+                        found.add(SolutionCache.Solution.of(depth, match.getKey(),
+                                ((ProjectionNode) match.getValue()).getSource(), translator.translate(match.getValue())));
+                    }
+
+                    System.out.println("Evaluated " + feed.getProduced() + " candidate query bodies.");
+                    evaluatedCount += feed.getProduced();
+
+                    if (feed.isStopped()) {
+                        System.out.println("Stopped: deadline passed or synthesis cancelled at depth " + depth + ".");
+                        stopped = true;
+                        break;
+                    }
+                    if (!solutions.isEmpty()) {
+                        System.out.println("Solutions found at depth " + depth + ". Stopping search.");
+                        break;
                     }
-                } catch (UnsupportedOperationException e) {
-                    // This can happen if the translator doesn't support a node type yet.
-                    // System.err.println("Translation not supported for a candidate: " + e.getMessage());
-                } catch (RuntimeException e) {
-                    // This catches SQL execution errors from the database.
-                    // This is expected for semantically incorrect queries.
-                    // System.err.println("Evaluation failed for a candidate.");
                 }
             }
-
-            if (!solutions.isEmpty()) {
-                System.out.println("Solutions found at depth " + depth + ". Stopping search.");
-                break;
+        } catch (CancellationException e) {
+            // Raised while counting candidates or searching top-k queries in-process.
+            System.out.println("Stopped: deadline passed or synthesis cancelled while generating candidates.");
+            stopped = true;
+        } finally {
+            unregister.run();
+            if (workerPool != null) {
+                workerPool.shutdownNow();
+            }
+            for (QueryExecutor workerExecutor : workerExecutors) {
+                workerExecutor.close();
             }
         }
 
+        if (resultCache != null) {
+            System.out.println("Result cache: " + resultCache.getStats());
+        }
+        if (solutionCache != null && !stopped && !found.isEmpty()) {
+            long inconclusive = candidateEvaluator.getInconclusiveCount();
+            if (inconclusive > 0) {
+                // Candidates that could not be decided (e.g. timed out) may have been solutions as well.
+                System.out.println("Not caching the solutions: " + inconclusive + " candidate(s) could not be decided.");
+            } else {
+                try {
+                    solutionCache.put(fingerprint, found);
+                } catch (IOException e) {
+                    System.err.println("Could not record the solutions in the solution cache: " + e.getMessage());
+                }
+            }
+        }
         System.out.println("Synthesis finished. Found " + solutions.size() + " solution(s).");
+        return new SynthesisResult(solutions, closestMatches == null ? List.of() : closestMatches.get(),
+                evaluatedCount, !stopped);
+    }
+
+    /**
+     * @return The select list of the final projection every candidate body is wrapped in.
+     */
+    static List<AliasedExpression> selectAllColumns(Table primaryTable) {
+        return primaryTable.getColumnNames().stream()
+                .map(colName -> new AliasedExpression(new ColumnReferenceNode(colName)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuilds cached solutions from their stored nodes.
+     * @return The solutions, or an empty list if any can no longer be decoded or no longer has the recorded SQL.
+     */
+    private static List<QueryNode> rebuild(List<SolutionCache.Solution> cached, List<AliasedExpression> selectAllColumns) {
+        ASTTranslator translator = new ASTTranslator();
+        List<QueryNode> solutions = new ArrayList<>();
+        for (SolutionCache.Solution solution : cached) {
+            QueryNode query;
+            try {
+                query = new ProjectionNode(solution.body(), selectAllColumns);
+            } catch (IllegalArgumentException e) {
+                // The nodes were written by a version with another encoding.
+                return List.of();
+            }
+            if (!translator.translate(query).equals(solution.sql())) {
+                return List.of();
+            }
+            solutions.add(query);
+        }
+        return solutions;
+    }
+
+    /**
+     * @return The matching candidates by their index in the feed.
+     */
+    private NavigableMap<Long, QueryNode> evaluateSequentially(CandidateFeed feed, CandidateEvaluator candidateEvaluator,
+                                                               QueryExecutor executor, boolean stopAtFirstSolution) {
+        NavigableMap<Long, QueryNode> solutions = new TreeMap<>();
+        CandidateFeed.Batch batch;
+        while ((batch = feed.next()) != null) {
+            boolean[] matched = checkBatch(batch.candidates(), candidateEvaluator, executor);
+            for (int i = 0; i < matched.length; i++) {
+                if (matched[i]) {
+                    solutions.put(batch.start() + i, batch.candidates().get(i));
+                    if (stopAtFirstSolution) {
+                        return solutions;
+                    }
+                }
+            }
+        }
         return solutions;
     }
-}
\ No newline at end of file
+
+    /**
+     * Evaluates candidates on several threads. Workers pull numbered batches from the shared feed,
+     * and matches are reported back in enumeration order, so the result is identical to
+     * {@link #evaluateSequentially}. When stopping at the first solution, workers stop pulling
+     * once the feed has passed the lowest matching index found so far.
+     */
+    private NavigableMap<Long, QueryNode> evaluateInParallel(CandidateFeed feed, CandidateEvaluator candidateEvaluator,
+                                                             ExecutorService workerPool,
+                                                             List<QueryExecutor> workerExecutors,
+                                                             boolean stopAtFirstSolution) {
+        ConcurrentSkipListMap<Long, QueryNode> matches = new ConcurrentSkipListMap<>();
+        AtomicLong firstMatch = new AtomicLong(Long.MAX_VALUE);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (QueryExecutor workerExecutor : workerExecutors) {
+            futures.add(workerPool.submit(() -> {
+                CandidateFeed.Batch batch;
+                while ((batch = feed.next()) != null) {
+                    if (stopAtFirstSolution && batch.start() > firstMatch.get()) {
+                        break;
+                    }
+                    boolean[] batchMatched = checkBatch(batch.candidates(), candidateEvaluator, workerExecutor);
+                    for (int i = 0; i < batchMatched.length; i++) {
+                        if (batchMatched[i]) {
+                            matches.put(batch.start() + i, batch.candidates().get(i));
+                            firstMatch.accumulateAndGet(batch.start() + i, Math::min);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while evaluating candidates", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Candidate evaluation failed", e.getCause());
+            }
+        }
+
+        if (stopAtFirstSolution && matches.size() > 1) {
+            return matches.headMap(matches.firstKey(), true);
+        }
+        return matches;
+    }
+
+    private boolean[] checkBatch(List<QueryNode> batch, CandidateEvaluator candidateEvaluator, QueryExecutor executor) {
+        if (batch.size() == 1) {
+            return new boolean[]{candidateEvaluator.isSolution(batch.get(0), executor)};
+        }
+        return candidateEvaluator.findSolutions(batch, executor);
+    }
+
+    /**
+     * Hands out consecutive batches of complete candidates, numbered in enumeration order.
+     * Query bodies are pulled from the enumerator only when a batch is requested.
+     * Safe to share between worker threads.
+     */
+    private static final class CandidateFeed {
+
+        record Batch(long start, List<QueryNode> candidates) {}
+
+        private final Iterator<QueryNode> bodies;
+        private final List<AliasedExpression> selectList;
+        private final int batchSize;
+        private final BooleanSupplier stopRequested;
+        private long produced;
+        private boolean stopped;
+
+        CandidateFeed(Iterator<QueryNode> bodies, List<AliasedExpression> selectList, int batchSize,
+                      BooleanSupplier stopRequested) {
+            this.bodies = bodies;
+            this.selectList = selectList;
+            this.batchSize = batchSize;
+            this.stopRequested = stopRequested;
+        }
+
+        /**
+         * @return The next batch, or null once the enumeration is exhausted or a stop was requested.
+         */
+        synchronized Batch next() {
+            if (stopped || stopRequested.getAsBoolean()) {
+                stopped = true;
+                return null;
+            }
+            long start = produced;
+            List<QueryNode> candidates = new ArrayList<>(batchSize);
+            try {
+                while (candidates.size() < batchSize && bodies.hasNext()) {
+                    candidates.add(new ProjectionNode(bodies.next(), selectList));
+                }
+            } catch (CancellationException e) {
+                // The enumerator polls for a stop while it builds candidates; the bodies already taken are kept.
+                stopped = true;
+            }
+            if (candidates.isEmpty()) {
+                return null;
+            }
+            produced += candidates.size();
+            return new Batch(start, candidates);
+        }
+
+        synchronized long getProduced() {
+            return produced;
+        }
+
+        /**
+         * @return true if the feed ended because a stop was requested, rather than by running out of candidates.
+         */
+        synchronized boolean isStopped() {
+            return stopped;
+        }
+    }
+}
@@ -1,220 +1,775 @@
 package synthesizer;
 
+import ast.ASTEvaluator;
+import ast.ASTNode;
 import ast.ExpressionNode;
 import ast.FilterNode;
 import ast.QueryNode;
 import ast.nodes.*;
 import ast.enums.*;
-import ast.ASTNode;
 import ast.OrderableQuery;
 import ast.LimitableQuery;
 import model.Table;
 import model.Vector;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  Implements a top-down, syntax-directed enumerative search using the new Table metadata.
  It recursively builds ASTs based on the language grammar and performs type-based pruning.
  */
 public class TopDownEnumerator {
+
+    // The memoized grammar rules.
+    private enum Rule { EXPRESSION, FILTER, ORDERABLE, ORDER_BY }
+
+    // Limit values tried when the expected output is not known
+    // The distances pgvector defines on vector columns; Hamming and Jaccard distance only exist for bit vectors.
+    private static final List<DistanceOperator> VECTOR_DISTANCES = List.of(DistanceOperator.L2_DISTANCE,
+            DistanceOperator.COSINE_DISTANCE, DistanceOperator.NEGATIVE_INNER_PRODUCT, DistanceOperator.L1_DISTANCE);
+    private static final List<Integer> DEFAULT_LIMIT_VALUES = List.of(1, 2, 5, 10);
+    private static final List<SortOrder> SORT_ORDERS = List.of(SortOrder.ASC, SortOrder.DESC);
+
     private final List<Table> inputTables;
-    // Memoization table to store results for (depth, targetType) to avoid re-computation.
-    private final Map<String, List<? extends ASTNode>> memo;
-    // Base components (leaf nodes)
-    private final List<ColumnReferenceNode> availableColumns;
-    private final List<ConstantValueNode> availableConstants;
+    // Materialized sub-programs live in the arena; the memo holds their ids per rule, indexed by depth.
+    private final NodeArena arena;
+    private final Map<Rule, List<int[]>> memo;
+    // Number of selections per depth when they are not materialized (no observational equivalence).
+    private final List<Long> orderableCounts;
+    // Base components (leaf nodes) and ORDER BY keys, as arena ids and, for sort keys, as objects
+    private final int[] columnIds;
+    private final int[] constantIds;
+    private final int[] sortKeyIds;
+    private final List<ExpressionNode> sortKeys;
     private final Table primaryTable; // Assuming one table for simplicity
+    // Observational equivalence: when set, only one representative per distinct result on the
+    // example inputs is kept in the memo. The signature sets span all depths, so a sub-query that
+    // behaves like a shallower one is never kept.
+    private final ASTEvaluator evaluator;
+    // Filters and sub-queries (selections over the primary table) are both signed by the rows of the
+    // primary table they keep, so a selection's signature is its source's bitmap AND its filter's bitmap.
+    private final FilterBitmaps filterBitmaps;
+    // Row bitmaps by arena id, for filters and sub-queries; null where a filter cannot be evaluated in-process.
+    private final List<BitSet> rowSets;
+    private final Set<BitSet> seenFilterSignatures;
+    private final Set<BitSet> seenQuerySignatures;
+    // Kept apart from seenQuerySignatures: an OrderByNode cannot stand in for a SelectNode source.
+    private final Set<List<List<Object>>> seenOrderedSignatures;
+    // Superset pruning: for each set of primary table rows that some expected output rows are equal to,
+    // how many output rows need one of them. Null when there is no expected output to prune against,
+    // or pruning is off.
+    private final Map<BitSet, Integer> requiredRows;
+    // Whether candidates are compared with the expected output including row order.
+    private final boolean orderSensitive;
+    private final List<Integer> limitValues;
+    // Polled while memoized lists are built, which can take long with observational equivalence.
+    private BooleanSupplier stopRequested = () -> false;
 
     public TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors) {
+        this(inputTables, queryVectors, false);
+    }
+
+    /**
+     * @param observationalEquivalence If true, filters and sub-queries are evaluated on the input
+     *                                 tables and those producing an already seen result are pruned.
+     */
+    public TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors, boolean observationalEquivalence) {
+        this(inputTables, queryVectors, observationalEquivalence, false);
+    }
+
+    /**
+     * @param observationalEquivalence If true, filters and sub-queries are evaluated on the input
+     *                                 tables and those producing an already seen result are pruned.
+     * @param orderSensitive If false, results are compared as multisets, so an ORDER BY is only generated
+     *                       where a LIMIT follows it. If true, an ORDER BY is generated at the top level
+     *                       as well, and with observational equivalence it is dropped if it does not
+     *                       reorder its source on the inputs.
+     */
+    public TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors, boolean observationalEquivalence,
+                             boolean orderSensitive) {
+        this(inputTables, queryVectors, observationalEquivalence, orderSensitive, null, false);
+    }
+
+    /**
+     * Enumerates the candidates for an example, ordered if the expected output is, with superset pruning.
+     * See {@link #TopDownEnumerator(List, List, boolean, Table, boolean)}.
+     */
+    public TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors, boolean observationalEquivalence,
+                             Table expectedOutput) {
+        this(inputTables, queryVectors, observationalEquivalence, expectedOutput, true);
+    }
+
+    /**
+     * Enumerates the candidates for an example, ordered if the expected output is.
+     * The only LIMIT generated is the output's row count: a smaller one returns too few rows, and a larger
+     * one can only match where the source alone, one level shallower, already does.
+     * @param observationalEquivalence See {@link #TopDownEnumerator(List, List, boolean, boolean)}.
+     * @param expectedOutput The expected output of the example.
+     * @param supersetPruning If true, filters the {@link ASTEvaluator} finds to drop a row the expected output
+     *                        needs are not generated: only selections drop rows, and nothing above a selection
+     *                        (ORDER BY, LIMIT, the final projection) can bring one back. Filters the evaluator
+     *                        cannot decide are kept. Pruning is only as exact as the evaluator.
+     */
+    public TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors, boolean observationalEquivalence,
+                             Table expectedOutput, boolean supersetPruning) {
+        this(inputTables, queryVectors, observationalEquivalence, expectedOutput.isOrdered(), expectedOutput,
+                supersetPruning);
+    }
+
+    private TopDownEnumerator(List<Table> inputTables, List<Vector> queryVectors, boolean observationalEquivalence,
+                              boolean orderSensitive, Table expectedOutput, boolean supersetPruning) {
         if (inputTables == null || inputTables.isEmpty()) {
             throw new IllegalArgumentException("Input tables cannot be null or empty.");
         }
         this.inputTables = inputTables;
         this.primaryTable = inputTables.get(0); // Main table for type lookups
-        this.memo = new HashMap<>();
+        this.arena = new NodeArena();
+        this.memo = new EnumMap<>(Rule.class);
+        this.orderableCounts = new ArrayList<>();
+        this.evaluator = observationalEquivalence ? new ASTEvaluator(inputTables) : null;
+        this.requiredRows = expectedOutput == null || !supersetPruning ? null : requiredRows(expectedOutput);
+        this.filterBitmaps = observationalEquivalence || requiredRows != null
+                ? new FilterBitmaps(evaluator != null ? evaluator : new ASTEvaluator(inputTables), primaryTable)
+                : null;
+        this.rowSets = new ArrayList<>();
+        this.seenFilterSignatures = new HashSet<>();
+        this.seenQuerySignatures = new HashSet<>();
+        this.seenOrderedSignatures = new HashSet<>();
+        this.orderSensitive = orderSensitive;
+        this.limitValues = expectedOutput == null ? DEFAULT_LIMIT_VALUES : List.of(expectedOutput.getRowCount());
 
         // Pre-generate the leaf nodes of our grammar.
-        this.availableColumns = new ArrayList<>();
-        this.availableConstants = new ArrayList<>();
-        initializeBaseComponents(queryVectors);
-    }
+        // A value occurring in several rows yields a single constant.
+        this.columnIds = primaryTable.getColumns().stream()
+                .mapToInt(column -> arena.column(column.getName()))
+                .distinct().toArray();
+        IntStream rowConstants = primaryTable.getRows().stream()
+                .flatMap(List::stream)
+                .filter(cellValue -> !(cellValue instanceof Vector))
+                .mapToInt(arena::constant);
+        IntStream vectorConstants = queryVectors.stream().mapToInt(arena::constant);
+        this.constantIds = IntStream.concat(rowConstants, vectorConstants).distinct().toArray();
 
-    private void initializeBaseComponents(List<Vector> queryVectors) {
-        for (Table.Column column : primaryTable.getColumns()) {
-            this.availableColumns.add(new ColumnReferenceNode(column.getName()));
-        }
-        for (List<Object> row : primaryTable.getRows()) {
-            for (Object cellValue : row) {
-                if (!(cellValue instanceof Vector)) {
-                    this.availableConstants.add(new ConstantValueNode(cellValue));
+        // Rows are sorted by a column, or by the distance of a vector column to a query vector.
+        IntStream.Builder keys = IntStream.builder();
+        IntStream.of(columnIds).forEach(keys::add);
+        for (int column : columnIds) {
+            for (int constant : constantIds) {
+                if (isVector(column) && isVector(constant)) {
+                    for (DistanceOperator op : VECTOR_DISTANCES) {
+                        keys.add(arena.distance(column, op, constant));
+                    }
                 }
             }
         }
-        for (Vector v : queryVectors) {
-            this.availableConstants.add(new ConstantValueNode(v));
+        this.sortKeyIds = keys.build().toArray();
+        this.sortKeys = new ArrayList<>();
+        for (int sortKeyId : sortKeyIds) {
+            this.sortKeys.add((ExpressionNode) arena.toNode(sortKeyId));
         }
     }
 
     /**
      Main entry point for the top-down search.
+     Materializes {@link #stream(int)}; prefer the stream for large depths.
      @param maxDepth The maximum depth/size of the AST to generate.
      @return A list of all valid, complete QueryNodes up to the given depth.
      */
     public List<QueryNode> enumerate(int maxDepth) {
-        return (List<QueryNode>) enumerate(QueryNode.class, maxDepth);
+        return stream(maxDepth).collect(Collectors.toList());
+    }
+
+    /**
+     Lazily enumerates the complete queries of a depth, in the same order as {@link #enumerate(int)}.
+     Candidates are built only as the stream is consumed. The memo keeps the expression and filter lists,
+     and, with observational equivalence, the pruned sub-query lists, all as ids into a {@link NodeArena}.
+     Queries composed from those (selections without pruning, orderings, limits) are recomputed on each
+     pass instead of being stored; AST objects exist only for the candidates currently being consumed.
+     @param depth The depth/size of the ASTs to generate.
+     */
+    public Stream<QueryNode> stream(int depth) {
+        return StreamSupport.stream(queries(depth).spliterator(), false);
     }
 
     /**
-     The core recursive enumeration function with memoization.
+     Lazily enumerates the candidates with index {@code fromIndex} (inclusive) to {@code toIndex} (exclusive)
+     of {@link #stream(int)}, e.g. to split a depth between workers. Each candidate is built by {@link #unrank}.
      */
-    private List<? extends ASTNode> enumerate(Class<? extends ASTNode> targetType, int depth) {
-        if (depth < 0) return new ArrayList<>();
-        String memoKey = depth + "_" + targetType.getName();
-        if (memo.containsKey(memoKey)) {
-            return memo.get(memoKey);
+    public Stream<QueryNode> stream(int depth, long fromIndex, long toIndex) {
+        if (fromIndex < 0 || toIndex > count(depth) || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") is outside of depth " + depth + ".");
         }
-        List<ASTNode> results = new ArrayList<>();
+        return LongStream.range(fromIndex, toIndex).mapToObj(index -> unrank(depth, index));
+    }
 
-        // --- Base Cases: depth = 0 (Leaf Nodes) ---
-        if (depth == 0) {
-            // A TableNode is the only OrderableQuery we can generate at depth 0.
-            if (OrderableQuery.class.isAssignableFrom(targetType)) {
-                results.add(new TableNode(primaryTable.getName()));
-            }
+    /**
+     Counts the complete queries of a depth without building them; equal to {@code stream(depth).count()}.
+     Expressions and filters are generated (they are memoized anyway), and with observational equivalence
+     so are the pruned sub-query lists, since pruning depends on evaluating them.
+     @throws ArithmeticException if the count does not fit in a long.
+     */
+    public long count(int depth) {
+        return count(QueryNode.class, depth);
+    }
+
+    /**
+     Counts the ASTs of a grammar type at a depth, as {@link #count(int)} does for complete queries.
+     @param targetType One of QueryNode, LimitableQuery, OrderableQuery, FilterNode or ExpressionNode.
+     */
+    public long count(Class<? extends ASTNode> targetType, int depth) {
+        if (targetType == QueryNode.class) return countQueries(depth);
+        if (targetType == LimitableQuery.class) return countLimitables(depth);
+        if (targetType == OrderableQuery.class) return countOrderables(depth);
+        if (targetType == FilterNode.class) return filterIds(depth).length;
+        if (targetType == ExpressionNode.class) return expressionIds(depth).length;
+        throw new IllegalArgumentException("No grammar rule for " + targetType.getSimpleName() + ".");
+    }
+
+    /**
+     Builds the candidate at position {@code index} of {@link #stream(int)} directly.
+     @throws IndexOutOfBoundsException if {@code index} is not below {@link #count(int)}.
+     */
+    public QueryNode unrank(int depth, long index) {
+        if (index < 0 || index >= countQueries(depth)) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of depth " + depth + ".");
+        }
+        long unlimited = orderSensitive ? countLimitables(depth) : countOrderables(depth);
+        if (index < unlimited) {
+            return orderSensitive ? unrankLimitable(depth, index) : unrankOrderable(depth, index);
+        }
+        index -= unlimited;
+        LimitableQuery source = unrankLimitable(depth - 1, index / limitValues.size());
+        return new LimitNode(source, limitValues.get((int) (index % limitValues.size())));
+    }
+
+    /**
+     Makes the enumerator poll {@code stopRequested} while it builds its memoized lists, e.g. within
+     {@link #count(int)}: once per pair of predicate operands, per selection and per source of orderings. Once it
+     returns true, the call building the list throws {@link CancellationException}; the enumerator is then
+     in an unspecified state and must not be used again.
+     */
+    void setStopRequested(BooleanSupplier stopRequested) {
+        this.stopRequested = stopRequested;
+    }
 
-            // Expression leaves
-            if (ExpressionNode.class.isAssignableFrom(targetType)) {
-                results.addAll(availableColumns);
-                results.addAll(availableConstants);
+    private void checkStopRequested() {
+        if (stopRequested.getAsBoolean()) {
+            throw new CancellationException("Enumeration stopped.");
+        }
+    }
+
+    // --- Building blocks for other search orders (see BestFirstEnumerator). ---
+
+    /**
+     @return The filters of a depth, after pruning if observational equivalence is on.
+     */
+    List<FilterNode> filters(int depth) {
+        List<FilterNode> filters = new ArrayList<>();
+        for (FilterNode filter : this.<FilterNode>nodesOf(filterIds(depth))) {
+            filters.add(filter);
+        }
+        return filters;
+    }
+
+    /**
+     @return The expressions an ORDER BY may sort by.
+     */
+    List<ExpressionNode> sortKeys() {
+        return sortKeys;
+    }
+
+    List<SortOrder> sortOrders() {
+        return SORT_ORDERS;
+    }
+
+    List<Integer> limitValues() {
+        return limitValues;
+    }
+
+    TableNode table() {
+        return new TableNode(primaryTable.getName());
+    }
+
+    // --- Counting and unranking mirror the grammar rules below, block by block and in the same order. ---
+
+    private long countQueries(int depth) {
+        if (depth < 0) return 0;
+        long unlimited = orderSensitive ? countLimitables(depth) : countOrderables(depth);
+        return Math.addExact(unlimited, Math.multiplyExact(countLimitables(depth - 1), limitValues.size()));
+    }
+
+    private long countLimitables(int depth) {
+        if (depth < 0) return 0;
+        return Math.addExact(countOrderables(depth), countOrderBys(depth));
+    }
+
+    private long countOrderBys(int depth) {
+        if (depth <= 0) return 0;
+        if (evaluator != null) {
+            return orderByIds(depth).length;
+        }
+        return Math.multiplyExact(countOrderables(depth - 1), (long) sortKeyIds.length * SORT_ORDERS.size());
+    }
+
+    private long countOrderables(int depth) {
+        if (depth < 0) return 0;
+        if (evaluator != null) {
+            return orderableIds(depth).length;
+        }
+        while (orderableCounts.size() <= depth) {
+            int next = orderableCounts.size();
+            long total = next == 0 ? 1 : 0;
+            for (int sourceDepth = 0; sourceDepth < next; sourceDepth++) {
+                int minFilterDepth = sourceDepth == next - 1 ? 0 : next - 1;
+                for (int filterDepth = minFilterDepth; filterDepth < next; filterDepth++) {
+                    total = Math.addExact(total, Math.multiplyExact(orderableCounts.get(sourceDepth), (long) filterIds(filterDepth).length));
+                }
             }
+            orderableCounts.add(total);
+        }
+        return orderableCounts.get(depth);
+    }
+
+    private LimitableQuery unrankLimitable(int depth, long index) {
+        long orderables = countOrderables(depth);
+        if (index < orderables) {
+            return (LimitableQuery) unrankOrderable(depth, index);
+        }
+        return unrankOrderBy(depth, index - orderables);
+    }
 
-            memo.put(memoKey, results);
-            return results;
+    private OrderByNode unrankOrderBy(int depth, long index) {
+        if (evaluator != null) {
+            return (OrderByNode) arena.toNode(orderByIds(depth)[(int) index]);
         }
+        int perSource = sortKeyIds.length * SORT_ORDERS.size();
+        OrderableQuery source = unrankOrderable(depth - 1, index / perSource);
+        int offset = (int) (index % perSource);
+        return new OrderByNode(source, sortKeys.get(offset / SORT_ORDERS.size()), SORT_ORDERS.get(offset % SORT_ORDERS.size()));
+    }
 
-        // --- Recursive Rules (depth > 0) ---
-        // Rule: To generate an OrderableQuery (e.g., Table, Select, Join)
-        if (OrderableQuery.class.isAssignableFrom(targetType)) {
-            // It can be a SelectNode applied to another OrderableQuery of a smaller depth.
-            List<OrderableQuery> sources = (List<OrderableQuery>) enumerate(OrderableQuery.class, depth - 1);
-            List<FilterNode> filters = (List<FilterNode>) enumerate(FilterNode.class, depth - 1);
-            for (OrderableQuery source : sources) {
-                for (FilterNode filter : filters) {
-                    results.add(new SelectNode(source, filter));
+    private OrderableQuery unrankOrderable(int depth, long index) {
+        if (evaluator != null) {
+            return (OrderableQuery) arena.toNode(orderableIds(depth)[(int) index]);
+        }
+        if (depth == 0) {
+            return new TableNode(primaryTable.getName());
+        }
+        for (int sourceDepth = 0; sourceDepth < depth; sourceDepth++) {
+            int minFilterDepth = sourceDepth == depth - 1 ? 0 : depth - 1;
+            for (int filterDepth = minFilterDepth; filterDepth < depth; filterDepth++) {
+                int[] filters = filterIds(filterDepth);
+                long block = countOrderables(sourceDepth) * filters.length;
+                if (index < block) {
+                    OrderableQuery source = unrankOrderable(sourceDepth, index / filters.length);
+                    return new SelectNode(source, (FilterNode) arena.toNode(filters[(int) (index % filters.length)]));
                 }
+                index -= block;
             }
-        // Add rules for JoinNode here if needed.
         }
+        throw new IndexOutOfBoundsException("Index is outside of the selections at depth " + depth + ".");
+    }
+
+    // --- Grammar rules, one per target type. Each returns a lazily evaluated Iterable. ---
 
-        // Rule: To generate a LimitableQuery (e.g., OrderableQuery, OrderByNode)
-        if (LimitableQuery.class.isAssignableFrom(targetType)) {
-            // Option 1: Any OrderableQuery of the same depth is also Limitable.
-            results.addAll((List<LimitableQuery>) enumerate(OrderableQuery.class, depth));
+    /**
+     Rule: To generate a top-level QueryNode (e.g., LimitableQuery, LimitNode)
+     */
+    private Iterable<QueryNode> queries(int depth) {
+        if (depth < 0) return List.of();
+        // Option 1: Any LimitableQuery is a valid final query. Without a LIMIT, an ORDER BY only
+        // permutes rows, which a multiset comparison cannot observe.
+        Iterable<? extends QueryNode> unlimited = orderSensitive ? limitables(depth) : orderables(depth);
 
-            // Option 2: An OrderByNode applied to an OrderableQuery of a smaller depth.
-            // The depth budget is now simpler: 1 for the OrderByNode, depth-1 for the source.
-            // The ColumnReferenceNode is a leaf (depth 0), so it doesn't consume depth from the budget.
-            if (depth > 0) {
-                List<OrderableQuery> sources = (List<OrderableQuery>) enumerate(OrderableQuery.class, depth - 1);
+        // Option 2: A LimitNode applied to a LimitableQuery of smaller depth.
+        Iterable<LimitNode> limits = LazyIterables.product(limitables(depth - 1), limitValues, LimitNode::new);
+        return LazyIterables.concat(unlimited, limits);
+    }
 
-                // Get all available columns to sort by. These are leaf nodes.
-                List<ColumnReferenceNode> sortableColumns = this.availableColumns;
+    /**
+     Rule: To generate a LimitableQuery (e.g., OrderableQuery, OrderByNode)
+     */
+    private Iterable<LimitableQuery> limitables(int depth) {
+        if (depth < 0) return List.of();
+        // Option 1: Any OrderableQuery of the same depth is also Limitable.
+        // Option 2: An OrderByNode applied to an OrderableQuery of a smaller depth.
+        Iterable<OrderableQuery> orderables = orderables(depth);
+        return LazyIterables.concat(
+                LazyIterables.map(orderables, source -> (LimitableQuery) source),
+                orderBys(depth));
+    }
 
-                for (OrderableQuery source : sources) {
-                    for (ColumnReferenceNode column : sortableColumns) {
-                        // Create versions for both ASC and DESC
-                        results.add(new OrderByNode(source, column, SortOrder.ASC));
-                        results.add(new OrderByNode(source, column, SortOrder.DESC));
+    private Iterable<OrderByNode> orderBys(int depth) {
+        if (depth <= 0) return List.of();
+        if (evaluator != null) {
+            return nodesOf(orderByIds(depth));
+        }
+        return lazyOrderBys(depth);
+    }
+
+    private Iterable<OrderByNode> lazyOrderBys(int depth) {
+        // The depth budget is now simpler: 1 for the OrderByNode, depth-1 for the source.
+        // Sort keys count as leaves (depth 0), so they don't consume depth from the budget.
+        Iterable<OrderableQuery> sources = orderables(depth - 1);
+        // Create versions for both ASC and DESC
+        return LazyIterables.flatMap(sources, source ->
+                LazyIterables.flatMap(sortKeys, sortKey ->
+                        LazyIterables.map(SORT_ORDERS,
+                                order -> new OrderByNode(source, sortKey, order))));
+    }
+
+    /**
+     With observational equivalence, pruning is stateful, so the surviving orderings are kept.
+     */
+    private int[] orderByIds(int depth) {
+        return memoized(Rule.ORDER_BY, depth, () -> {
+            IntStream.Builder results = IntStream.builder();
+            for (int source : orderableIds(depth - 1)) {
+                checkStopRequested();
+                OrderableQuery sourceNode = (OrderableQuery) arena.toNode(source);
+                for (int i = 0; i < sortKeyIds.length; i++) {
+                    for (SortOrder order : SORT_ORDERS) {
+                        // Only kept orderings are stored in the arena.
+                        if (isNewOrdering(new OrderByNode(sourceNode, sortKeys.get(i), order), source)) {
+                            results.add(arena.orderBy(source, sortKeyIds[i], order));
+                        }
                     }
                 }
             }
+            return results.build().toArray();
+        });
+    }
+
+    /**
+     Rule: To generate an OrderableQuery (e.g., Table, Select, Join)
+     */
+    private Iterable<OrderableQuery> orderables(int depth) {
+        if (depth < 0) return List.of();
+        if (evaluator != null) {
+            return nodesOf(orderableIds(depth));
         }
+        return lazyOrderables(depth);
+    }
 
-        // Rule: To generate a top-level QueryNode (e.g., LimitableQuery, LimitNode)
-        if (targetType == QueryNode.class) { // Exact match for the final query type
-            // Option 1: Any LimitableQuery is a valid final query.
-            results.addAll((List<QueryNode>) enumerate(LimitableQuery.class, depth));
+    private Iterable<OrderableQuery> lazyOrderables(int depth) {
+        if (depth == 0) {
+            // A TableNode is the only OrderableQuery we can generate at depth 0.
+            return List.of(new TableNode(primaryTable.getName()));
+        }
+        // It can be a SelectNode applied to another OrderableQuery of a smaller depth.
+        // Depth is 1 + max(source, filter), so one child has exactly depth-1 and the other at most that.
+        return LazyIterables.flatMap(LazyIterables.range(0, depth), sourceDepth -> {
+            int minFilterDepth = sourceDepth == depth - 1 ? 0 : depth - 1;
+            return LazyIterables.flatMap(LazyIterables.range(minFilterDepth, depth), filterDepth ->
+                    LazyIterables.product(orderables(sourceDepth), this.<FilterNode>nodesOf(filterIds(filterDepth)),
+                            SelectNode::new));
+        });
+        // Add rules for JoinNode here if needed.
+    }
 
-            // Option 2: A LimitNode applied to a LimitableQuery of smaller depth.
-            List<LimitableQuery> sources = (List<LimitableQuery>) enumerate(LimitableQuery.class, depth - 1);
-            for (LimitableQuery source : sources) {
-                for (int k : List.of(1, 2, 5, 10)) { // Hardcoded limit values for enumeration
-                    results.add(new LimitNode(source, k));
+    /**
+     With observational equivalence, pruning is stateful, so the surviving sub-queries are kept.
+     Same rule and order as {@link #lazyOrderables(int)}.
+     */
+    private int[] orderableIds(int depth) {
+        if (depth < 0) return new int[0];
+        return memoized(Rule.ORDERABLE, depth, () -> {
+            IntStream.Builder results = IntStream.builder();
+            if (depth == 0) {
+                BitSet rows = filterBitmaps.allRows();
+                if (isNewQueryResult(rows)) {
+                    results.add(keptQuery(arena.table(primaryTable.getName()), rows));
                 }
+                return results.build().toArray();
             }
-        }
+            for (int sourceDepth = 0; sourceDepth < depth; sourceDepth++) {
+                int minFilterDepth = sourceDepth == depth - 1 ? 0 : depth - 1;
+                for (int filterDepth = minFilterDepth; filterDepth < depth; filterDepth++) {
+                    for (int source : orderableIds(sourceDepth)) {
+                        for (int filter : filterIds(filterDepth)) {
+                            checkStopRequested();
+                            // Only kept selections are stored in the arena, and only they keep their bitmap.
+                            BitSet rows = selectedRows(rowSet(source), rowSet(filter));
+                            if (isNewQueryResult(rows)) {
+                                results.add(keptQuery(arena.select(source, filter), rows));
+                            }
+                        }
+                    }
+                }
+            }
+            return results.build().toArray();
+        });
+    }
+
+    // Rules for generating ExpressionNode and FilterNode primitives.
+    private int[] expressionIds(int depth) {
+        if (depth < 0) return new int[0];
+        return memoized(Rule.EXPRESSION, depth, () -> {
+            if (depth == 0) {
+                // Expression leaves
+                return IntStream.concat(IntStream.of(columnIds), IntStream.of(constantIds)).toArray();
+            }
+            return generateExpressions(depth);
+        });
+    }
+
+    private int[] filterIds(int depth) {
+        if (depth <= 0) return new int[0];
+        return memoized(Rule.FILTER, depth, () -> generateFilters(depth));
+    }
 
-        // Rules for generating ExpressionNode and FilterNode primitives.
-        if (ExpressionNode.class.isAssignableFrom(targetType)) {
-            generateExpressions(results, depth);
+    /**
+     Memoization helper for results that are materialized, keyed by (rule, depth).
+     */
+    private int[] memoized(Rule rule, int depth, Supplier<int[]> generator) {
+        List<int[]> byDepth = memo.computeIfAbsent(rule, r -> new ArrayList<>());
+        while (byDepth.size() <= depth) {
+            byDepth.add(null);
         }
-        if (FilterNode.class.isAssignableFrom(targetType)) {
-            generateFilters(results, depth);
+        int[] results = byDepth.get(depth);
+        if (results == null) {
+            results = generator.get();
+            byDepth.set(depth, results);
         }
-
-        memo.put(memoKey, results);
         return results;
     }
 
+    /**
+     @return The object form of arena nodes, built one at a time as the iterable is consumed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Iterable<T> nodesOf(int[] ids) {
+        return LazyIterables.map(LazyIterables.range(0, ids.length), i -> (T) arena.toNode(ids[i]));
+    }
+
     /**
      Helper for semantic checks: Determines if an expression resolves to a vector type.
      */
-    private boolean isVector(ExpressionNode node) {
-        if (node instanceof ColumnReferenceNode) {
-            String colName = ((ColumnReferenceNode) node).getColumnName();
-            Optional<Table.Column> column = primaryTable.getColumn(colName);
-            return column.isPresent() && column.get().isVector();
-        }
-        if (node instanceof ConstantValueNode) {
-            return ((ConstantValueNode) node).getValue() instanceof Vector;
+    private boolean isVector(int expression) {
+        switch (arena.opcode(expression)) {
+            case NodeArena.COLUMN:
+                Optional<Table.Column> column = primaryTable.getColumn(arena.columnName(expression));
+                return column.isPresent() && column.get().isVector();
+            case NodeArena.CONSTANT:
+                return arena.constantValue(expression) instanceof Vector;
+            default:
+                // A full implementation would require a type inference system for complex expressions.
+                return false;
         }
-        // A full implementation would require a type inference system for complex expressions.
-        return false;
     }
-    
+
     // --- Helper methods for generating primitive expressions and filters ---
-    private void generateExpressions(List<ASTNode> results, int depth) {
-        if (depth > 0) {
-            List<ExpressionNode> children = (List<ExpressionNode>) enumerate(ExpressionNode.class, depth - 1);
-            for (ExpressionNode left : children) {
-                // Combine with a leaf node to maintain the depth model (1 + max(children))
-                for (ExpressionNode right : (List<ExpressionNode>) enumerate(ExpressionNode.class, 0)) {
-                    if (isVector(left) && isVector(right)) {
-                        for (DistanceOperator op : DistanceOperator.values()) {
-                            results.add(new DistanceExpressionNode(left, op, right));
-                            results.add(new DistanceExpressionNode(right, op, left)); // Symmetric
-                        }
+    private int[] generateExpressions(int depth) {
+        IntStream.Builder results = IntStream.builder();
+        // Mirrored pairs of leaves produce each expression twice; the arena gives both the same id.
+        BitSet seen = new BitSet();
+        for (int left : expressionIds(depth - 1)) {
+            checkStopRequested();
+            // Combine with a leaf node to maintain the depth model (1 + max(children))
+            for (int right : expressionIds(0)) {
+                if (isVector(left) && isVector(right)) {
+                    for (DistanceOperator op : VECTOR_DISTANCES) {
+                        addDistinct(results, seen, arena.distance(left, op, right), id -> true);
+                        addDistinct(results, seen, arena.distance(right, op, left), id -> true); // Symmetric
                     }
                 }
             }
         }
+        return results.build().toArray();
     }
 
-    private void generateFilters(List<ASTNode> results, int depth) {
-        if (depth > 0) {
-            List<ExpressionNode> children = (List<ExpressionNode>) enumerate(ExpressionNode.class, depth - 1);
-            for (ExpressionNode left : children) {
-                for (ExpressionNode right : (List<ExpressionNode>) enumerate(ExpressionNode.class, 0)) {
-                    if (areTypesCompatibleForPredicate(left, right)) {
-                        for (PredicateOperator op : PredicateOperator.values()) {
-                            results.add(new PredicateNode(left, op, right));
-                            results.add(new PredicateNode(right, op, left)); // Symmetric
-                        }
+    private int[] generateFilters(int depth) {
+        IntStream.Builder results = IntStream.builder();
+        // Mirrored pairs of leaves produce each predicate twice; the arena gives both the same id.
+        BitSet seen = new BitSet();
+        for (int left : expressionIds(depth - 1)) {
+            for (int right : expressionIds(0)) {
+                checkStopRequested();
+                if (areTypesCompatibleForPredicate(left, right)) {
+                    for (PredicateOperator op : PredicateOperator.values()) {
+                        addDistinct(results, seen, arena.predicate(left, op, right), this::isUsefulFilter);
+                        addDistinct(results, seen, arena.predicate(right, op, left), this::isUsefulFilter); // Symmetric
                     }
                 }
             }
         }
+        return results.build().toArray();
+    }
+
+    private static void addDistinct(IntStream.Builder results, BitSet seen, int id, IntPredicate keep) {
+        if (!seen.get(id)) {
+            seen.set(id);
+            if (keep.test(id)) {
+                results.add(id);
+            }
+        }
+    }
+
+    private boolean isUsefulFilter(int id) {
+        return keepsRequiredRows(id) && isNewFilter(id);
+    }
+
+    /**
+     @return For each set of primary table rows equal to some expected output rows, the number of those
+             output rows; null if the output does not have the columns of the primary table.
+     */
+    private Map<BitSet, Integer> requiredRows(Table expectedOutput) {
+        List<BitSet> equivalents = expectedOutput.findEquivalentRows(primaryTable);
+        if (equivalents == null) {
+            return null;
+        }
+        Map<BitSet, Integer> required = new HashMap<>();
+        for (BitSet rows : equivalents) {
+            required.merge(rows, 1, Integer::sum);
+        }
+        return required;
+    }
+
+    /**
+     Superset pruning check for filters.
+     @return false only if the filter is known to keep fewer input rows equal to some expected output rows
+             than there are such output rows, so that no query using it can produce the output.
+     */
+    private boolean keepsRequiredRows(int id) {
+        if (requiredRows == null) {
+            return true;
+        }
+        BitSet kept;
+        try {
+            kept = filterBitmaps.rows((FilterNode) arena.toNode(id));
+        } catch (RuntimeException e) {
+            // Unknown in-process; left to observational equivalence and the database.
+            return true;
+        }
+        for (Map.Entry<BitSet, Integer> required : requiredRows.entrySet()) {
+            BitSet available = (BitSet) required.getKey().clone();
+            available.and(kept);
+            if (available.cardinality() < required.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     Observational equivalence check for filters.
+     @return true if the filter should be kept, i.e. pruning is off or it selects a row set not seen yet.
+     */
+    private boolean isNewFilter(int id) {
+        if (evaluator == null) {
+            return true;
+        }
+        BitSet signature;
+        try {
+            signature = filterBitmaps.rows((FilterNode) arena.toNode(id));
+        } catch (UnsupportedOperationException e) {
+            // Cannot be evaluated in-process, so it cannot be proven equivalent to anything.
+            return true;
+        } catch (RuntimeException e) {
+            // The filter is ill-typed on the inputs; every query using it would fail.
+            return false;
+        }
+        if (!seenFilterSignatures.add(signature)) {
+            return false;
+        }
+        setRowSet(id, signature);
+        return true;
+    }
+
+    /**
+     Observational equivalence check for sub-queries, by the rows of the primary table they return.
+     Checked before the sub-query is stored, so pruned ones never reach the arena.
+     @param rows The row bitmap of the sub-query, or null if it cannot be computed in-process.
+     @return true if the query should be kept, i.e. its result on the inputs has not been seen yet.
+     */
+    private boolean isNewQueryResult(BitSet rows) {
+        return rows == null || seenQuerySignatures.add(rows);
+    }
+
+    /**
+     Records the row bitmap of a kept sub-query, if known.
+     @return The id of the sub-query.
+     */
+    private int keptQuery(int id, BitSet rows) {
+        if (rows != null) {
+            setRowSet(id, rows);
+        }
+        return id;
+    }
+
+    /**
+     Observational equivalence check for ORDER BY sub-queries. Orderings that give the same rows in the
+     same order as their source are pruned, as are orderings equal to an already kept one.
+     @return true if the query should be kept.
+     */
+    private boolean isNewOrdering(OrderByNode orderBy, int source) {
+        if (evaluator == null) {
+            return true;
+        }
+        try {
+            List<List<Object>> rows = evaluator.evaluate(orderBy).getRows();
+            BitSet sourceRows = rowSet(source);
+            List<List<Object>> unsorted = sourceRows != null
+                    ? sourceRows.stream().mapToObj(primaryTable.getRows()::get).collect(Collectors.toList())
+                    : evaluator.evaluate(orderBy.getSource()).getRows();
+            return !rows.equals(unsorted) && seenOrderedSignatures.add(rows);
+        } catch (UnsupportedOperationException e) {
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     @return The row bitmap of a filter or sub-query, or null if it is unknown.
+     */
+    private BitSet rowSet(int id) {
+        return id < rowSets.size() ? rowSets.get(id) : null;
+    }
+
+    private void setRowSet(int id, BitSet rows) {
+        while (rowSets.size() <= id) {
+            rowSets.add(null);
+        }
+        rowSets.set(id, rows);
+    }
+
+    /**
+     @return A new bitmap with the source rows the filter keeps, or null if that is unknown. A filter that
+             cannot be evaluated in-process is never reached on an empty source, which stays empty.
+     */
+    private static BitSet selectedRows(BitSet sourceRows, BitSet filterRows) {
+        if (sourceRows == null || (filterRows == null && !sourceRows.isEmpty())) {
+            return null;
+        }
+        BitSet rows = (BitSet) sourceRows.clone();
+        if (filterRows != null) {
+            rows.and(filterRows);
+        }
+        return rows;
     }
 
     /**
      Helper for semantic checks: Determines if two expressions are compatible for a predicate.
      E.g., don't compare a vector to a number.
      */
-    private boolean areTypesCompatibleForPredicate(ExpressionNode left, ExpressionNode right) {
+    private boolean areTypesCompatibleForPredicate(int left, int right) {
         boolean leftIsVec = isVector(left);
         boolean rightIsVec = isVector(right);
         // Don't compare vectors with non-vectors using simple predicates.
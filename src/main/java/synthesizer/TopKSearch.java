@@ -0,0 +1,276 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.ExpressionNode;
+import ast.FilterNode;
+import ast.OrderableQuery;
+import ast.QueryNode;
+import ast.enums.SortOrder;
+import ast.nodes.AliasedExpression;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.LimitNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.ProjectionNode;
+import ast.nodes.SelectNode;
+import ast.nodes.TableNode;
+import database.QueryExecutor;
+import model.Table;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * A fast path for the most common shape of vector search,
+ * {@code SELECT * FROM t [WHERE filter] ORDER BY column <op> vector [ASC | DESC] LIMIT k},
+ * where {@code k} is the number of expected rows.
+ *
+ * <p>Instead of executing every combination of sort key, sort order and filter, the rows of the primary
+ * table are ranked once per distance sort key, in-process, and each combination is checked by walking
+ * that ranking: the expected output must be the first {@code k} rows of the source. Rows that tie with
+ * the k-th row may be returned in any order by the database, so any choice among them is accepted.
+ * Only the combinations that pass are executed, to confirm them on the database.
+ *
+ * <p>Sources are the primary table and its selections by a single predicate. The fast path only reports
+ * solutions of this shape; a smaller query with the same result may exist, which full enumeration would find.
+ */
+final class TopKSearch {
+
+    /**
+     * The rows of the primary table in ascending order of a sort key, with NULLs last.
+     */
+    private record Ranking(ExpressionNode sortKey, Object[] keys, int[] ascending) {}
+
+    private final TopDownEnumerator grammar;
+    private final ASTEvaluator evaluator;
+    private final Table primaryTable;
+    private final Table outputTable;
+    private final List<AliasedExpression> selectList;
+    // For each output row, the primary table rows equal to it; null if the output is not a selection of them.
+    private final List<BitSet> equivalents;
+    // How many output rows are equal to each set of primary table rows.
+    private final Map<BitSet, Integer> required = new HashMap<>();
+    private final BitSet allRequired = new BitSet();
+    private final BooleanSupplier stopRequested;
+
+    /**
+     * @param grammar Provides the sort keys and filters, so candidates are the ones enumeration would produce.
+     * @param selectList The final projection candidates are wrapped in.
+     * @param stopRequested Polled once per sort key and per filter; see {@link #search}.
+     */
+    TopKSearch(List<Table> inputTables, TopDownEnumerator grammar, Table outputTable,
+               List<AliasedExpression> selectList, BooleanSupplier stopRequested) {
+        this.grammar = grammar;
+        this.stopRequested = stopRequested;
+        this.evaluator = new ASTEvaluator(inputTables);
+        this.primaryTable = inputTables.get(0);
+        this.outputTable = outputTable;
+        this.selectList = selectList;
+        this.equivalents = outputTable.findEquivalentRows(primaryTable);
+        if (equivalents != null) {
+            for (BitSet rows : equivalents) {
+                required.merge(rows, 1, Integer::sum);
+                allRequired.or(rows);
+            }
+        }
+    }
+
+    /**
+     * Finds the top-k queries whose result is the expected output. Queries over the whole table are tried
+     * first; selections are only tried if none of those is a solution.
+     * @return The solutions, confirmed on the database; empty if the output is not a top-k result.
+     * @throws CancellationException if a stop was requested before the search finished.
+     */
+    List<QueryNode> search(CandidateEvaluator candidateEvaluator, QueryExecutor executor, boolean stopAtFirstSolution) {
+        int k = outputTable.getRowCount();
+        if (equivalents == null || k == 0) {
+            return List.of();
+        }
+        List<Ranking> rankings = rankings();
+        if (rankings.isEmpty()) {
+            return List.of();
+        }
+        FilterBitmaps filterBitmaps = new FilterBitmaps(evaluator, primaryTable);
+
+        TableNode table = grammar.table();
+        List<QueryNode> solutions = confirm(candidates(table, filterBitmaps.allRows(), rankings),
+                candidateEvaluator, executor, stopAtFirstSolution);
+        if (!solutions.isEmpty()) {
+            return solutions;
+        }
+
+        List<QueryNode> candidates = new ArrayList<>();
+        for (FilterNode filter : grammar.filters(1)) {
+            checkStopRequested();
+            BitSet rows;
+            try {
+                rows = filterBitmaps.rows(filter);
+            } catch (RuntimeException e) {
+                // Not decidable in-process, or ill-typed.
+                continue;
+            }
+            candidates.addAll(candidates(new SelectNode(table, filter), rows, rankings));
+        }
+        return confirm(candidates, candidateEvaluator, executor, stopAtFirstSolution);
+    }
+
+    /**
+     * @return The candidates over {@code source}, in the order of the rankings, whose top rows match the output.
+     */
+    private List<QueryNode> candidates(OrderableQuery source, BitSet sourceRows, List<Ranking> rankings) {
+        List<QueryNode> candidates = new ArrayList<>();
+        for (BitSet rows : required.keySet()) {
+            if (!rows.intersects(sourceRows)) {
+                return candidates;
+            }
+        }
+        for (Ranking ranking : rankings) {
+            for (SortOrder order : grammar.sortOrders()) {
+                if (isTopK(sourceRows, ranking, order == SortOrder.DESC)) {
+                    OrderByNode orderBy = new OrderByNode(source, ranking.sortKey(), order);
+                    candidates.add(new ProjectionNode(new LimitNode(orderBy, outputTable.getRowCount()), selectList));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return The distance sort keys that can be computed in-process, with the primary table ranked by each.
+     */
+    private List<Ranking> rankings() {
+        List<Ranking> rankings = new ArrayList<>();
+        for (ExpressionNode sortKey : grammar.sortKeys()) {
+            if (!(sortKey instanceof DistanceExpressionNode)) {
+                continue;
+            }
+            checkStopRequested();
+            Object[] keys;
+            try {
+                keys = evaluator.evaluateExpression(sortKey, primaryTable);
+            } catch (IllegalArgumentException e) {
+                // A query vector whose dimensions differ from the column's, which the database rejects as well.
+                continue;
+            }
+            Comparator<Integer> byKey = Comparator.comparing(row -> (Double) keys[row],
+                    Comparator.nullsLast(Comparator.<Double>naturalOrder()));
+            int[] ascending = IntStream.range(0, keys.length).boxed()
+                    .sorted(byKey).mapToInt(Integer::intValue).toArray();
+            rankings.add(new Ranking(sortKey, keys, ascending));
+        }
+        return rankings;
+    }
+
+    /**
+     * Checks whether the output is the first k rows of the source in ranking order. Reversing the ascending
+     * ranking gives the descending one, NULLs first, as PostgreSQL sorts them.
+     */
+    private boolean isTopK(BitSet sourceRows, Ranking ranking, boolean descending) {
+        int k = outputTable.getRowCount();
+        int[] ranked = new int[k];
+        int count = 0;
+        int end = ranking.ascending().length;
+        // The rows ranked strictly before the k-th row, and those tying with it.
+        BitSet before = new BitSet();
+        BitSet tied = new BitSet();
+        Object boundary = null;
+        for (int i = 0; i < end; i++) {
+            int row = ranking.ascending()[descending ? end - 1 - i : i];
+            if (!sourceRows.get(row)) {
+                continue;
+            }
+            if (count < k) {
+                ranked[count++] = row;
+                if (count == k) {
+                    boundary = ranking.keys()[row];
+                }
+                continue;
+            }
+            if (!Objects.equals(ranking.keys()[row], boundary)) {
+                break;
+            }
+            tied.set(row);
+        }
+        if (count < k) {
+            return false;
+        }
+        for (int position = 0; position < k; position++) {
+            int row = ranked[position];
+            if (Objects.equals(ranking.keys()[row], boundary)) {
+                tied.set(row);
+            } else {
+                before.set(row);
+            }
+        }
+
+        // The rows before the boundary are in every result; the rest are any of the tied rows.
+        BitSet unexplained = (BitSet) before.clone();
+        unexplained.andNot(allRequired);
+        if (!unexplained.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<BitSet, Integer> entry : required.entrySet()) {
+            int sure = intersectionSize(entry.getKey(), before);
+            int possible = sure + intersectionSize(entry.getKey(), tied);
+            if (entry.getValue() < sure || entry.getValue() > possible) {
+                return false;
+            }
+        }
+
+        if (outputTable.isOrdered()) {
+            // Each output row must rank where a row equal to it ranks, up to ties.
+            for (int position = 0; position < k; position++) {
+                if (!ranksAt(equivalents.get(position), sourceRows, ranking, ranking.keys()[ranked[position]])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void checkStopRequested() {
+        if (stopRequested.getAsBoolean()) {
+            throw new CancellationException("Top-k search stopped.");
+        }
+    }
+
+    private static boolean ranksAt(BitSet rows, BitSet sourceRows, Ranking ranking, Object key) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (sourceRows.get(row) && Objects.equals(ranking.keys()[row], key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int intersectionSize(BitSet left, BitSet right) {
+        BitSet intersection = (BitSet) left.clone();
+        intersection.and(right);
+        return intersection.cardinality();
+    }
+
+    private static List<QueryNode> confirm(List<QueryNode> candidates, CandidateEvaluator candidateEvaluator,
+                                           QueryExecutor executor, boolean stopAtFirstSolution) {
+        List<QueryNode> solutions = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return solutions;
+        }
+        boolean[] matched = candidateEvaluator.findSolutions(candidates, executor);
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                solutions.add(candidates.get(i));
+                if (stopAtFirstSolution) {
+                    break;
+                }
+            }
+        }
+        return solutions;
+    }
+}
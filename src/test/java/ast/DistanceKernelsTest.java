@@ -0,0 +1,211 @@
+package ast;
+
+import ast.enums.DistanceOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DistanceKernelsTest {
+
+    // Lengths that are not a multiple of any lane count above 1, and the common embedding sizes.
+    private static final int[] LENGTHS = {1, 3, 5, 7, 9, 13, 17, 31, 33, 63, 65, 769, 1537, 768, 1536};
+
+    /**
+     * Distances pgvector returns for {@code '[1,2,3]'} and {@code '[4,5,6]'}, and for integer vectors of 768 and
+     * 1536 dimensions (see {@link #integerVectors}). Every sum is exact in float, whatever the order of additions,
+     * so every kernel must return these values exactly.
+     */
+    private record Reference(float[] a, float[] b, double l2, double negativeInnerProduct, double cosine,
+                             double l1) {}
+
+    private static final List<Reference> REFERENCES = List.of(
+            new Reference(new float[]{1, 2, 3}, new float[]{4, 5, 6},
+                    5.196152422706632, -32, 0.025368153802923787, 9),
+            new Reference(integerVectors(768)[0], integerVectors(768)[1],
+                    67.95586803212802, 8, 1.0036870489981302, 1538),
+            new Reference(integerVectors(1536)[0], integerVectors(1536)[1],
+                    96.1041102138717, 8, 1.001840525239742, 3076));
+
+    @Test
+    void scalarKernelMatchesReferenceValues() {
+        assertMatchesReferences(new ScalarDistanceKernel());
+    }
+
+    @Test
+    void simdKernelMatchesReferenceValues() {
+        assertMatchesReferences(simdKernel());
+    }
+
+    @Test
+    void selectedKernelMatchesReferenceValues() {
+        for (Reference reference : REFERENCES) {
+            float[] a = reference.a();
+            float[] b = reference.b();
+            assertEquals(reference.l2(), DistanceKernels.distance(DistanceOperator.L2_DISTANCE, a, b));
+            assertEquals(reference.negativeInnerProduct(),
+                    DistanceKernels.distance(DistanceOperator.NEGATIVE_INNER_PRODUCT, a, b));
+            assertEquals(reference.cosine(), DistanceKernels.distance(DistanceOperator.COSINE_DISTANCE, a, b));
+            assertEquals(reference.l1(), DistanceKernels.distance(DistanceOperator.L1_DISTANCE, a, b));
+        }
+    }
+
+    @Test
+    void scalarKernelIsWithinToleranceOfExactSums() {
+        DistanceKernel scalar = new ScalarDistanceKernel();
+        for (float[][] pair : randomVectors()) {
+            float[] a = pair[0];
+            float[] b = pair[1];
+            Sums exact = Sums.of(a, b);
+            assertWithin(exact.squaredL2(), scalar.squaredL2(a, b), exact.squaredL2Tolerance());
+            assertWithin(exact.dot(), scalar.innerProduct(a, b), exact.dotTolerance());
+            assertWithin(exact.l1(), scalar.l1(a, b), exact.l1Tolerance());
+            assertWithin(exact.cosineDistance(), scalar.cosineDistance(a, b), exact.cosineTolerance());
+        }
+    }
+
+    @Test
+    void simdKernelAgreesWithScalarKernelWithinTolerance() {
+        DistanceKernel simd = simdKernel();
+        DistanceKernel scalar = new ScalarDistanceKernel();
+        for (float[][] pair : randomVectors()) {
+            float[] a = pair[0];
+            float[] b = pair[1];
+            Sums exact = Sums.of(a, b);
+            assertWithin(scalar.squaredL2(a, b), simd.squaredL2(a, b), exact.squaredL2Tolerance());
+            assertWithin(scalar.innerProduct(a, b), simd.innerProduct(a, b), exact.dotTolerance());
+            assertWithin(scalar.l1(a, b), simd.l1(a, b), exact.l1Tolerance());
+            assertWithin(scalar.cosineDistance(a, b), simd.cosineDistance(a, b), exact.cosineTolerance());
+        }
+    }
+
+    @Test
+    void cosineDistanceOfZeroVectorIsNaN() {
+        List<DistanceKernel> kernels = new ArrayList<>(List.of(new ScalarDistanceKernel()));
+        if (isSimdAvailable()) {
+            kernels.add(new SimdDistanceKernel());
+        }
+        for (DistanceKernel kernel : kernels) {
+            for (int length : LENGTHS) {
+                float[] zero = new float[length];
+                float[] other = integerVectors(length)[0];
+                other[0] = 1;
+                assertTrue(Double.isNaN(kernel.cosineDistance(zero, other)));
+                assertTrue(Double.isNaN(kernel.cosineDistance(other, zero)));
+                assertTrue(Double.isNaN(kernel.cosineDistance(zero, zero)));
+            }
+        }
+        float[] zero = new float[768];
+        assertTrue(Double.isNaN(DistanceKernels.distance(DistanceOperator.COSINE_DISTANCE, zero, zero)));
+    }
+
+    /**
+     * The sums of the rounded float terms the kernels add, computed in double, and how far a kernel's float
+     * sum of them may be from these.
+     */
+    private record Sums(int length, double squaredL2, double dot, double absoluteDot, double l1,
+                        double normA, double normB) {
+
+        static Sums of(float[] a, float[] b) {
+            double squaredL2 = 0, dot = 0, absoluteDot = 0, l1 = 0, normA = 0, normB = 0;
+            for (int i = 0; i < a.length; i++) {
+                float diff = a[i] - b[i];
+                squaredL2 += diff * diff;
+                dot += a[i] * b[i];
+                absoluteDot += Math.abs(a[i] * b[i]);
+                l1 += Math.abs(diff);
+                normA += a[i] * a[i];
+                normB += b[i] * b[i];
+            }
+            return new Sums(a.length, squaredL2, dot, absoluteDot, l1, normA, normB);
+        }
+
+        double squaredL2Tolerance() {
+            return DistanceKernel.reorderingTolerance(length, squaredL2);
+        }
+
+        double dotTolerance() {
+            return DistanceKernel.reorderingTolerance(length, absoluteDot);
+        }
+
+        double l1Tolerance() {
+            return DistanceKernel.reorderingTolerance(length, l1);
+        }
+
+        double cosineDistance() {
+            return 1.0 - Math.max(-1.0, Math.min(1.0, dot / Math.sqrt(normA * normB)));
+        }
+
+        /**
+         * The error of the dot product relative to the norms, plus that of the norms relative to themselves,
+         * to first order, with a factor of two for higher-order terms and the final rounding to float.
+         */
+        double cosineTolerance() {
+            double similarity = Math.abs(dot / Math.sqrt(normA * normB));
+            double normError = DistanceKernel.reorderingTolerance(length, normA) / normA
+                    + DistanceKernel.reorderingTolerance(length, normB) / normB;
+            return 2 * (dotTolerance() / Math.sqrt(normA * normB) + similarity * normError / 2) + 0x1p-24;
+        }
+    }
+
+    private static void assertMatchesReferences(DistanceKernel kernel) {
+        for (Reference reference : REFERENCES) {
+            float[] a = reference.a();
+            float[] b = reference.b();
+            assertEquals(reference.l2(), Math.sqrt(kernel.squaredL2(a, b)));
+            assertEquals(reference.negativeInnerProduct(), (double) -kernel.innerProduct(a, b));
+            assertEquals(reference.cosine(), kernel.cosineDistance(a, b));
+            assertEquals(reference.l1(), (double) kernel.l1(a, b));
+        }
+    }
+
+    private static void assertWithin(double expected, double actual, double tolerance) {
+        assertTrue(Math.abs(expected - actual) <= tolerance,
+                "Expected " + expected + " within " + tolerance + " but was " + actual);
+    }
+
+    /**
+     * @return Vectors with components {@code i % 7 - 3} and {@code i % 5 - 2}, whose sums are small integers.
+     */
+    private static float[][] integerVectors(int length) {
+        float[] a = new float[length];
+        float[] b = new float[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = i % 7 - 3;
+            b[i] = i % 5 - 2;
+        }
+        return new float[][]{a, b};
+    }
+
+    /**
+     * @return Pairs of vectors with components in [-1, 1) of every length in {@link #LENGTHS}.
+     */
+    private static List<float[][]> randomVectors() {
+        Random random = new Random(42);
+        List<float[][]> pairs = new ArrayList<>();
+        for (int length : LENGTHS) {
+            float[] a = new float[length];
+            float[] b = new float[length];
+            for (int i = 0; i < length; i++) {
+                a[i] = random.nextFloat() * 2 - 1;
+                b[i] = random.nextFloat() * 2 - 1;
+            }
+            pairs.add(new float[][]{a, b});
+        }
+        return pairs;
+    }
+
+    private static boolean isSimdAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    private static DistanceKernel simdKernel() {
+        assumeTrue(isSimdAvailable(), "Run with --add-modules jdk.incubator.vector to test the SIMD kernel.");
+        return new SimdDistanceKernel();
+    }
+}
@@ -0,0 +1,19 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PooledConnectionTest {
+
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() {
+        // Nothing connects until a connection is borrowed from an empty pool.
+        ConnectionPool pool = new ConnectionPool("jdbc:postgresql://localhost/unused", "user", "password",
+                2, 10, 1, 0);
+        PooledConnection pooled = new PooledConnection(pool, null);
+        pooled.close();
+        pooled.close();
+        assertEquals(1, pool.getMetrics().idleConnections());
+    }
+}
@@ -0,0 +1,27 @@
+package database;
+
+import database.QueryExecutor.QueryOutcome;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryExecutorTest {
+
+    @Test
+    void failuresDecidedByTheQueryAndDataAreDeterministic() {
+        // undefined_column, division_by_zero, and a result with too many rows.
+        assertTrue(QueryOutcome.failed("42703").isDeterministicFailure());
+        assertTrue(QueryOutcome.failed("22012").isDeterministicFailure());
+        assertTrue(QueryOutcome.failed("54000").isDeterministicFailure());
+    }
+
+    @Test
+    void transientFailuresAreNotDeterministic() {
+        // connection_failure, query_canceled (also timeouts), out_of_memory, and an unknown state.
+        assertFalse(QueryOutcome.failed("08006").isDeterministicFailure());
+        assertFalse(QueryOutcome.failed("57014").isDeterministicFailure());
+        assertFalse(QueryOutcome.failed("53200").isDeterministicFailure());
+        assertFalse(QueryOutcome.failed(null).isDeterministicFailure());
+    }
+}
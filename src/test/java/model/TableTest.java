@@ -0,0 +1,60 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableTest {
+
+    private static final List<Table.Column> COLUMNS = List.of(
+            new Table.Column("id", "long"), new Table.Column("name", "text"));
+
+    private static Table table(boolean ordered, Object... ids) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            rows.add(Arrays.asList(ids[i], "row" + i));
+        }
+        return new Table("t", COLUMNS, rows, ordered);
+    }
+
+    @Test
+    void equalTablesWithLargePivotValuesAreEqual() {
+        Object[][] cases = {
+                {10_000_000_000_000L}, {-10_000_000_000_000L}, {Long.MAX_VALUE}, {Long.MIN_VALUE},
+                {1e13}, {-1e13}, {1e300}, {Double.MAX_VALUE}, {-Double.MAX_VALUE},
+        };
+        for (Object[] ids : cases) {
+            assertTrue(table(false, ids).equals(table(false, ids)), "Value " + ids[0]);
+        }
+    }
+
+    @Test
+    void largePivotValuesArePairedAsMultisets() {
+        Table table = table(false, 10_000_000_000_000L, 1L, 9_000_000_000_000_000L);
+        Table permuted = new Table("t", COLUMNS, List.of(
+                Arrays.asList(9_000_000_000_000_000L, "row2"),
+                Arrays.asList(10_000_000_000_000L, "row0"),
+                Arrays.asList(1L, "row1")));
+        assertTrue(table.equals(permuted));
+        assertEquals(3, table.countMatchingRows(permuted));
+    }
+
+    @Test
+    void largePivotValuesStillDistinguishRows() {
+        assertFalse(table(false, 10_000_000_000_000L).equals(table(false, 10_000_000_000_001L)));
+        assertFalse(table(false, 1e13).equals(table(false, 1.0001e13)));
+        assertTrue(table(false, 1e13).equals(table(false, 1e13 + 1e-4)));
+    }
+
+    @Test
+    void floatingPointValuesMatchWithinTolerance() {
+        assertTrue(table(false, 0.5, 2.0).equals(table(false, 0.5 - 1e-10, 2.0 + 1e-10)));
+        assertFalse(table(false, 0.5).equals(table(false, 0.5 + 1e-8)));
+    }
+}
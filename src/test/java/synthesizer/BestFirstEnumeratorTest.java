@@ -0,0 +1,85 @@
+package synthesizer;
+
+import ast.ASTEvaluator;
+import ast.ASTNode;
+import ast.QueryNode;
+import ast.nodes.ConstantValueNode;
+import model.Table;
+import model.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BestFirstEnumeratorTest {
+
+    private static final int MAX_DEPTH = 3;
+
+    private static final Table ITEMS = new Table("items",
+            List.of(new Table.Column("id", "long"), new Table.Column("category", "text"),
+                    new Table.Column("embedding", "vector")),
+            List.of(Arrays.asList(1L, "x", new Vector(new float[]{0f, 1f})),
+                    Arrays.asList(2L, "y", new Vector(new float[]{1f, 0f})),
+                    Arrays.asList(3L, "y", new Vector(new float[]{0f, 2f})),
+                    Arrays.asList(4L, "x", new Vector(new float[]{2f, 0f}))));
+
+    private static final List<Vector> QUERY_VECTORS = List.of(new Vector(new float[]{1f, 1f}));
+
+    /**
+     * Makes filters on text much more expensive than filters on numbers, so that the rows with category 'y'
+     * are first selected by two nested filters on the id (depth 3), and only later by one on the category
+     * (depth 2), which alone can still be extended within the maximum depth.
+     */
+    private static final CostModel DEEP_FIRST = new CostModel() {
+        @Override
+        public double nodeCost(ASTNode node) {
+            if (node instanceof ConstantValueNode && ((ConstantValueNode) node).getValue() instanceof String) {
+                return 100;
+            }
+            return 1;
+        }
+    };
+
+    @Test
+    void observationalEquivalenceKeepsEveryReachableResult() {
+        assertEquals(results(false, DEEP_FIRST), results(true, DEEP_FIRST));
+    }
+
+    @Test
+    void observationalEquivalenceKeepsEveryReachableResultUnderUniformCosts() {
+        CostModel uniform = node -> 1;
+        assertEquals(results(false, uniform), results(true, uniform));
+    }
+
+    @Test
+    void withoutObservationalEquivalenceYieldsTheTopDownCandidates() {
+        TopDownEnumerator topDown = new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, false, true);
+        Set<String> expected = new HashSet<>();
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            topDown.stream(depth).forEach(query -> expected.add(query.toString()));
+        }
+        Set<String> actual = new BestFirstEnumerator(List.of(ITEMS), QUERY_VECTORS, DEEP_FIRST, false, true, MAX_DEPTH)
+                .stream().map(QueryNode::toString).collect(Collectors.toSet());
+        assertEquals(expected, actual);
+    }
+
+    private static Set<List<List<Object>>> results(boolean observationalEquivalence, CostModel costModel) {
+        ASTEvaluator evaluator = new ASTEvaluator(List.of(ITEMS));
+        Set<List<List<Object>>> results = new HashSet<>();
+        new BestFirstEnumerator(List.of(ITEMS), QUERY_VECTORS, costModel, observationalEquivalence, true, MAX_DEPTH)
+                .stream().forEach(query -> {
+                    try {
+                        results.add(new ArrayList<>(evaluator.evaluate(query).getRows()));
+                    } catch (RuntimeException e) {
+                        // Ill-typed on the inputs.
+                    }
+                });
+        return results;
+    }
+}
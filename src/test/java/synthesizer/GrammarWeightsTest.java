@@ -0,0 +1,106 @@
+package synthesizer;
+
+import ast.ASTTranslator;
+import ast.QueryNode;
+import ast.enums.DistanceOperator;
+import ast.enums.PredicateOperator;
+import ast.enums.SortOrder;
+import ast.nodes.ColumnReferenceNode;
+import ast.nodes.ConstantValueNode;
+import ast.nodes.DistanceExpressionNode;
+import ast.nodes.LimitNode;
+import ast.nodes.OrderByNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.ProjectionNode;
+import ast.nodes.SelectNode;
+import ast.nodes.TableNode;
+import model.Table;
+import model.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GrammarWeightsTest {
+
+    private static final Table ITEMS = new Table("items",
+            List.of(new Table.Column("id", "long"), new Table.Column("category", "text"),
+                    new Table.Column("embedding", "vector")),
+            List.of());
+
+    private static final TableNode TABLE = new TableNode("items");
+    private static final SelectNode SELECT = new SelectNode(TABLE,
+            new PredicateNode(new ColumnReferenceNode("category"), PredicateOperator.EQ, new ConstantValueNode("x")));
+    private static final OrderByNode ORDER_BY = new OrderByNode(SELECT,
+            new DistanceExpressionNode(new ColumnReferenceNode("embedding"), DistanceOperator.L2_DISTANCE,
+                    new ConstantValueNode(new Vector(new float[]{1f, 0f}))),
+            SortOrder.DESC);
+    private static final LimitNode LIMIT = new LimitNode(ORDER_BY, 3);
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void observesLiteralAndParameterizedTranslations() {
+        QueryNode query = new ProjectionNode(LIMIT, Synthesizer.selectAllColumns(ITEMS));
+        ASTTranslator translator = new ASTTranslator();
+        GrammarWeights literal = new GrammarWeights();
+        GrammarWeights parameterized = new GrammarWeights();
+
+        assertTrue(literal.observe(translator.translate(query), 1));
+        assertTrue(parameterized.observe(translator.translateParameterized(query).sql(), 1));
+
+        // Both forms count the same choices, and the observed ones become cheaper than the uniform weights.
+        for (QueryNode node : List.of(TABLE, SELECT, ORDER_BY, LIMIT)) {
+            assertEquals(literal.nodeCost(node), parameterized.nodeCost(node), EPSILON, node.toString());
+        }
+        assertTrue(literal.nodeCost(LIMIT) < new GrammarWeights().nodeCost(LIMIT));
+        assertTrue(literal.nodeCost(ORDER_BY) < new GrammarWeights().nodeCost(ORDER_BY));
+    }
+
+    @Test
+    void queriesOutsideTheGrammarAreNotCounted() {
+        GrammarWeights weights = new GrammarWeights();
+
+        assertFalse(weights.observe("SELECT * FROM items WHERE id = 1 OR id = 2", 1));
+        assertFalse(weights.observe("SELECT * FROM items JOIN tags ON items.id = tags.item_id", 1));
+        assertFalse(weights.observe("SELECT * FROM (SELECT * FROM items) AS sub", 1));
+        assertFalse(weights.observe("SELECT * FROM items WHERE id IN (SELECT item_id FROM tags)", 1));
+
+        assertEquals(0.0, weights.getObservedCount());
+        assertEquals(new GrammarWeights().nodeCost(SELECT), weights.nodeCost(SELECT), EPSILON);
+    }
+
+    @Test
+    void countsAreSmoothedByAddingOne() {
+        GrammarWeights weights = new GrammarWeights();
+        int predicateOperators = PredicateOperator.values().length;
+        assertEquals(Math.log(2), weights.nodeCost(TABLE), EPSILON);
+        assertEquals(Math.log(predicateOperators), weights.nodeCost(SELECT.getFilter()), EPSILON);
+
+        assertTrue(weights.observe("SELECT * FROM items WHERE category = 'x'", 2));
+
+        // One selection and one table per query: still even.
+        assertEquals(Math.log(2), weights.nodeCost(TABLE), EPSILON);
+        // = was seen twice, every other operator never.
+        assertEquals(-Math.log(3.0 / (2 + predicateOperators)), weights.nodeCost(SELECT.getFilter()), EPSILON);
+        assertEquals(-Math.log(1.0 / (2 + predicateOperators)),
+                weights.nodeCost(new PredicateNode(new ColumnReferenceNode("id"), PredicateOperator.LT,
+                        new ConstantValueNode(1L))), EPSILON);
+    }
+
+    @Test
+    void stopCostChargesTheProductionsNotTaken() {
+        GrammarWeights weights = new GrammarWeights();
+
+        // No LIMIT and no ORDER BY.
+        assertEquals(2 * Math.log(2), weights.stopCost(SELECT), EPSILON);
+        // No LIMIT.
+        assertEquals(Math.log(2), weights.stopCost(ORDER_BY), EPSILON);
+        assertEquals(0.0, weights.stopCost(LIMIT), EPSILON);
+        // No ORDER BY below the LIMIT.
+        assertEquals(Math.log(2), weights.stopCost(new LimitNode(SELECT, 1)), EPSILON);
+    }
+}
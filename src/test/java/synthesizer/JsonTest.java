@@ -0,0 +1,57 @@
+package synthesizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTest {
+
+    @Test
+    void quotedStringsParseBackUnchanged() {
+        String value = "say \"hi\"\\ \n\r\t\u0001 caf\u00e9";
+        assertEquals("\"say \\\"hi\\\"\\\\ \\n\\r\\t\\u0001 caf\u00e9\"", Json.quote(value));
+        assertEquals(value, Json.parseObject("{\"sql\": " + Json.quote(value) + "}").get("sql"));
+    }
+
+    @Test
+    void parsesEveryKindOfValue() {
+        Map<String, Object> object = Json.parseObject(
+                " {\"a\": [1, -2.5e1, true, false, null], \"b\": {}, \"c\": \"\\/\\b\\f\"} ");
+        assertEquals(Arrays.asList(1.0, -25.0, true, false, null), object.get("a"));
+        assertEquals(Map.of(), object.get("b"));
+        assertEquals("/\b\f", object.get("c"));
+        assertEquals(List.of("a", "b", "c"), List.copyOf(object.keySet()));
+    }
+
+    @Test
+    void unicodeEscapesAreDecoded() {
+        assertEquals("\u00e9\u4e2d", Json.parseObject("{\"s\": \"\\u00e9\\u4E2D\"}").get("s"));
+        assertNull(Json.parseObject("{\"s\": null}").get("s"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"s\": \"\\u00g9\"}"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"s\": \"\\u00"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"s\": \"\\x\"}"));
+    }
+
+    @Test
+    void trailingCharactersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{} {}"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"a\": 1},"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("[1, 2]"));
+    }
+
+    @Test
+    void truncatedLinesAreRejected() {
+        String line = "{\"fingerprint\": \"abc\", \"solutions\": [{\"depth\": 2, \"sql\": \"SELECT 1\"}]}";
+        Json.parseObject(line);
+        for (int length = 0; length < line.length(); length++) {
+            String truncated = line.substring(0, length);
+            assertThrows(IllegalArgumentException.class, () -> Json.parseObject(truncated), truncated);
+        }
+    }
+}
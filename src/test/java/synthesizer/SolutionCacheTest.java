@@ -0,0 +1,78 @@
+package synthesizer;
+
+import ast.ASTTranslator;
+import ast.QueryNode;
+import model.Table;
+import model.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolutionCacheTest {
+
+    private static final Table ITEMS = new Table("items",
+            List.of(new Table.Column("id", "long"), new Table.Column("category", "text"),
+                    new Table.Column("embedding", "vector")),
+            List.of(Arrays.asList(1L, "x", new Vector(new float[]{0f, 1f})),
+                    Arrays.asList(2L, "y", new Vector(new float[]{1f, 0f}))));
+
+    private static final List<Vector> QUERY_VECTORS = List.of(new Vector(new float[]{1f, 1f}));
+
+    @Test
+    void solutionsAreRebuiltFromTheFileWithoutAnEnumerator() throws IOException {
+        ASTTranslator translator = new ASTTranslator();
+        List<QueryNode> bodies = new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, false, false)
+                .stream(2).collect(Collectors.toList());
+        List<SolutionCache.Solution> solutions = new ArrayList<>();
+        for (int i = 0; i < bodies.size(); i++) {
+            solutions.add(SolutionCache.Solution.of(2, i, bodies.get(i), translator.translate(bodies.get(i))));
+        }
+
+        Path file = Files.createTempFile("solutions", ".jsonl");
+        try {
+            SolutionCache.open(file).put("example", solutions);
+            List<SolutionCache.Solution> loaded = SolutionCache.open(file).get("example");
+
+            assertEquals(bodies.size(), loaded.size());
+            for (int i = 0; i < bodies.size(); i++) {
+                assertEquals(translator.translate(bodies.get(i)), translator.translate(loaded.get(i).body()));
+                assertEquals(i, loaded.get(i).index());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedLinesAreSkipped() throws IOException {
+        QueryNode body = new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, false, false).stream(1).findFirst().get();
+        Path file = Files.createTempFile("solutions", ".jsonl");
+        try {
+            SolutionCache.open(file).put("example", List.of(SolutionCache.Solution.of(1, 0, body, "SELECT 1")));
+            String line = Files.readString(file, StandardCharsets.UTF_8);
+            Files.writeString(file, line.substring(0, line.length() / 2), StandardCharsets.UTF_8);
+
+            assertTrue(SolutionCache.open(file).get("example").isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void nodesMustPrecedeTheirParents() {
+        // A SELECT whose source is itself.
+        int[] code = {NodeArena.SELECT, 0, 0, 0};
+        assertThrows(IllegalArgumentException.class, () -> NodeArena.decode(code, List.of()));
+    }
+}
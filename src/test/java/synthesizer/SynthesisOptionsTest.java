@@ -0,0 +1,23 @@
+package synthesizer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SynthesisOptionsTest {
+
+    @Test
+    void supersetPruningFollowsTheUseOfTheEvaluator() {
+        assertTrue(new SynthesisOptions().isSupersetPruning());
+        assertFalse(new SynthesisOptions().setLocalEvaluation(false).isSupersetPruning());
+        assertTrue(new SynthesisOptions().setLocalEvaluation(false).setObservationalEquivalence(true)
+                .isSupersetPruning());
+    }
+
+    @Test
+    void supersetPruningCanBeSetExplicitly() {
+        assertFalse(new SynthesisOptions().setSupersetPruning(false).isSupersetPruning());
+        assertTrue(new SynthesisOptions().setLocalEvaluation(false).setSupersetPruning(true).isSupersetPruning());
+    }
+}
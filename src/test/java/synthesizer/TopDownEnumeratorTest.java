@@ -0,0 +1,73 @@
+package synthesizer;
+
+import ast.ASTTranslator;
+import model.Table;
+import model.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopDownEnumeratorTest {
+
+    private static final Table ITEMS = new Table("items",
+            List.of(new Table.Column("id", "long"), new Table.Column("category", "text"),
+                    new Table.Column("embedding", "vector")),
+            List.of(Arrays.asList(1L, "x", new Vector(new float[]{0f, 1f})),
+                    Arrays.asList(2L, "y", new Vector(new float[]{1f, 0f})),
+                    Arrays.asList(3L, "y", new Vector(new float[]{0f, 2f}))));
+
+    private static final List<Vector> QUERY_VECTORS = List.of(new Vector(new float[]{1f, 1f}));
+
+    // The row with category 'x'.
+    private static final Table OUTPUT = new Table("output", ITEMS.getColumns(), List.of(ITEMS.getRows().get(0)));
+
+    @Test
+    void supersetPruningKeepsFiltersTheEvaluatorCannotDecide() {
+        // The evaluator does not order text, so it cannot tell which rows the solution's filter keeps.
+        assertTrue(bodies(true, 2).contains("items WHERE category < 'y'"));
+    }
+
+    @Test
+    void supersetPruningDropsOnlyWhenEnabled() {
+        // Drops the row with id 1, which the output needs.
+        String filter = "items WHERE id > 1";
+        assertFalse(bodies(true, 2).contains(filter));
+        assertTrue(bodies(false, 2).contains(filter));
+    }
+
+    @Test
+    void onlyDistancesDefinedOnVectorsAreGenerated() {
+        for (String body : bodies(false, 2)) {
+            assertFalse(body.contains("<~>") || body.contains("<%>"), body);
+        }
+        assertTrue(bodies(false, 2).contains("items ORDER BY embedding <+> '[1.0,1.0]' ASC LIMIT 1"));
+    }
+
+    @Test
+    void countingStopsOnceAStopIsRequested() {
+        TopDownEnumerator enumerator = new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, true, true);
+        enumerator.setStopRequested(() -> true);
+        assertThrows(CancellationException.class, () -> enumerator.count(2));
+    }
+
+    @Test
+    void countingIsUnaffectedWhileNoStopIsRequested() {
+        TopDownEnumerator enumerator = new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, true, true);
+        enumerator.setStopRequested(() -> false);
+        assertTrue(enumerator.count(2) > 0);
+    }
+
+    private static Set<String> bodies(boolean supersetPruning, int depth) {
+        ASTTranslator translator = new ASTTranslator();
+        return new TopDownEnumerator(List.of(ITEMS), QUERY_VECTORS, false, OUTPUT, supersetPruning)
+                .stream(depth).map(translator::translate).collect(Collectors.toSet());
+    }
+}